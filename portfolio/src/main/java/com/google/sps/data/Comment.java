@@ -29,4 +29,24 @@ public final class Comment {
     this.username = username;
     this.email = email;
   }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public String getUsername() {
+    return username;
+  }
+
+  public String getEmail() {
+    return email;
+  }
 }
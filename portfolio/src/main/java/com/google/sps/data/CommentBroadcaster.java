@@ -0,0 +1,372 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.ThreadManager;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/**
+ * Pushes newly stored comments to every connected {@code /comments/stream} client as server-sent
+ * events. Each batch of comments is rendered once, as a {@code comments} event holding the same
+ * JSON as a page from {@code /get-comments}, and the same bytes are written to every client; idle
+ * clients cost an open connection and nothing else.
+ *
+ * <p>One background thread does all the writing, so posting a comment never waits on clients, and
+ * sends a comment line to idle clients every {@code portfolio.commentStream.heartbeatSeconds} so
+ * that dead connections are noticed. Where background threads aren't allowed, events are written
+ * by the threads that publish them: whichever publisher gets there first writes every queued
+ * event in order, and the others leave theirs to it rather than waiting. There are no heartbeats
+ * then.
+ *
+ * <p>Writes never block: each client has a short backlog that is written with non-blocking servlet
+ * I/O as its connection takes it. A client that falls further behind than that is disconnected,
+ * rather than holding up everyone else, and catches up when its browser reconnects: every event
+ * has an ID, and the last hundred are replayed to a client that reconnects with a
+ * {@code Last-Event-ID} before them.
+ *
+ * <p>The App Engine Java 8 runtime buffers whole responses, so there an open stream delivers
+ * nothing until it ends. Clients subscribed with {@code oneEvent} are therefore disconnected as
+ * soon as an event has been written to them, which turns the stream into long polling: each event
+ * arrives straight away, and the browser reconnects for the next one.
+ */
+public final class CommentBroadcaster {
+  private static final Logger logger = Logger.getLogger(CommentBroadcaster.class.getName());
+
+  private static final long HEARTBEAT_SECONDS =
+      Long.getLong("portfolio.commentStream.heartbeatSeconds", 15);
+
+  // Events waiting to be written. Past this many, new ones are dropped rather than piling up.
+  private static final int QUEUE_CAPACITY = 1000;
+
+  // Events a client may fall behind by before it is disconnected.
+  private static final int MAX_BACKLOG = 16;
+
+  // Events kept to replay to clients that reconnect.
+  private static final int RECENT_EVENTS = 100;
+
+  // Heartbeats have no ID, so they don't move a client's Last-Event-ID.
+  private static final Event HEARTBEAT =
+      new Event(0, ": heartbeat\n\n".getBytes(StandardCharsets.UTF_8));
+
+  private static final CommentBroadcaster instance = new CommentBroadcaster(backgroundThreads());
+
+  private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+  private final BlockingQueue<Event> events = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+  // False when events are written by the publishing thread.
+  private final boolean background;
+
+  // Guarded by recent, which also keeps events queued in ID order.
+  private final Deque<Event> recent = new ArrayDeque<>();
+  private long lastEventId;
+
+  // Held by the publishing thread writing queued events, when there is no background writer.
+  private final Lock writing = new ReentrantLock();
+
+  /** Creates a broadcaster whose writer comes from {@code threads}, or that has none. */
+  CommentBroadcaster(ThreadFactory threads) {
+    this.background = threads != null && startWriter(threads);
+  }
+
+  /** Returns the broadcaster shared by the servlets. */
+  public static CommentBroadcaster getInstance() {
+    return instance;
+  }
+
+  /**
+   * Starts sending events to the client of {@code context}, until it disconnects or times out.
+   * Events after {@code lastEventId} that are still remembered are sent first; pass -1 for new
+   * events only. With {@code oneEvent} the client is disconnected once it has been sent an event.
+   */
+  public void subscribe(AsyncContext context, long lastEventId, boolean oneEvent)
+      throws IOException {
+    Client client = new Client(context, oneEvent);
+    context.addListener(new AsyncListener() {
+      @Override
+      public void onComplete(AsyncEvent event) {
+        clients.remove(client);
+      }
+
+      @Override
+      public void onTimeout(AsyncEvent event) {
+        close(client);
+      }
+
+      @Override
+      public void onError(AsyncEvent event) {
+        clients.remove(client);
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) {}
+    });
+    client.out.setWriteListener(client);
+
+    synchronized (recent) {
+      clients.add(client);
+      if (lastEventId >= 0) {
+        for (Event event : recent) {
+          if (event.id > lastEventId) {
+            client.send(event);
+          }
+        }
+      }
+    }
+  }
+
+  /** Returns how many clients are connected. */
+  public int getClientCount() {
+    return clients.size();
+  }
+
+  /** Sends {@code comments} to every connected client. */
+  public void publish(Collection<Comment> comments) {
+    if (comments.isEmpty()) {
+      return;
+    }
+    byte[] json = new CommentPage(new ArrayList<>(comments), null).toJson();
+
+    boolean queued;
+    synchronized (recent) {
+      // Remembered even with nobody connected, for clients that are in the middle of reconnecting.
+      lastEventId++;
+      byte[] prefix = ("id: " + lastEventId + "\nevent: comments\ndata: ")
+          .getBytes(StandardCharsets.UTF_8);
+      byte[] bytes = new byte[prefix.length + json.length + 2];
+      System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+      System.arraycopy(json, 0, bytes, prefix.length, json.length);
+      bytes[bytes.length - 2] = '\n';
+      bytes[bytes.length - 1] = '\n';
+      Event event = new Event(lastEventId, bytes);
+      recent.add(event);
+      if (recent.size() > RECENT_EVENTS) {
+        recent.removeFirst();
+      }
+      // Clients skip events older than the last they were sent, so they must be queued in order.
+      queued = events.offer(event);
+    }
+    if (!queued) {
+      logger.warning("Comment stream is backed up; dropping " + comments.size() + " comments");
+    }
+    if (!background) {
+      writeQueued();
+    }
+  }
+
+  /**
+   * Writes every queued event, unless another publisher already is. Checking the queue again after
+   * letting go makes sure that an event queued while this one was finishing isn't left behind.
+   */
+  private void writeQueued() {
+    while (!events.isEmpty() && writing.tryLock()) {
+      try {
+        Event event;
+        while ((event = events.poll()) != null) {
+          sendToAll(event);
+        }
+      } finally {
+        writing.unlock();
+      }
+    }
+  }
+
+  private void writeUntilInterrupted() {
+    try {
+      while (true) {
+        Event event = events.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        sendToAll(event == null ? HEARTBEAT : event);
+      }
+    } catch (InterruptedException e) {
+      // The instance is shutting down.
+    }
+  }
+
+  private void sendToAll(Event event) {
+    for (Client client : clients) {
+      client.send(event);
+    }
+  }
+
+  /** Disconnects {@code client}, if it is still connected. */
+  private void close(Client client) {
+    clients.remove(client);
+    synchronized (client) {
+      if (client.closed) {
+        return;
+      }
+      client.closed = true;
+    }
+    try {
+      client.context.complete();
+    } catch (IllegalStateException e) {
+      // Already completed.
+    }
+  }
+
+  /**
+   * Starts the thread that writes events, and returns whether it could be started. Where background
+   * threads aren't allowed, it is creating the thread that fails, not asking for the factory.
+   */
+  private boolean startWriter(ThreadFactory threads) {
+    try {
+      Thread thread = threads.newThread(this::writeUntilInterrupted);
+      if (thread == null) {
+        throw new IllegalStateException("No thread for the comment stream");
+      }
+      thread.start();
+      return true;
+    } catch (RuntimeException | LinkageError e) {
+      // The SDK's thread factory can also fail while loading its own classes.
+      logger.log(Level.INFO,
+          "Background threads can't be started, so comment events will be written as they are "
+              + "posted.",
+          e);
+      return false;
+    }
+  }
+
+  /** Returns the factory for threads that outlive requests, or null if this instance has none. */
+  private static ThreadFactory backgroundThreads() {
+    try {
+      return ThreadManager.backgroundThreadFactory();
+    } catch (RuntimeException e) {
+      logger.info("No background threads, so comment events will be written as they are posted.");
+      return null;
+    }
+  }
+
+  /** An event, rendered once for every client. */
+  private static final class Event {
+    final long id;
+    final byte[] bytes;
+
+    Event(long id, byte[] bytes) {
+      this.id = id;
+      this.bytes = bytes;
+    }
+  }
+
+  /** One connected client, and the events it hasn't taken yet. */
+  private final class Client implements WriteListener {
+    final AsyncContext context;
+    final ServletOutputStream out;
+    private final boolean oneEvent;
+
+    // Guarded by this.
+    private final Deque<Event> backlog = new ArrayDeque<>();
+    private long lastQueuedId;
+    private boolean unflushed;
+    private boolean sentEvent;
+    boolean closed;
+
+    Client(AsyncContext context, boolean oneEvent) throws IOException {
+      this.context = context;
+      this.out = context.getResponse().getOutputStream();
+      this.oneEvent = oneEvent;
+    }
+
+    /** Queues {@code event} and writes as much as the connection takes without blocking. */
+    void send(Event event) {
+      boolean open;
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        if (event == HEARTBEAT) {
+          // Only idle clients need one.
+          if (!backlog.isEmpty()) {
+            return;
+          }
+        } else if (event.id <= lastQueuedId) {
+          // Already replayed when the client subscribed.
+          return;
+        } else {
+          lastQueuedId = event.id;
+        }
+        if (backlog.size() >= MAX_BACKLOG) {
+          logger.info("Disconnecting a comment stream client that fell behind");
+          open = false;
+        } else {
+          backlog.add(event);
+          open = drain();
+        }
+      }
+      if (!open) {
+        close(this);
+      }
+    }
+
+    @Override
+    public void onWritePossible() {
+      boolean open;
+      synchronized (this) {
+        open = closed || drain();
+      }
+      if (!open) {
+        close(this);
+      }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+      close(this);
+    }
+
+    /**
+     * Writes queued events while the connection is ready for them. Returns false if the client is
+     * gone, or has been sent all it is going to be.
+     */
+    private boolean drain() {
+      try {
+        while (out.isReady()) {
+          Event next = backlog.poll();
+          if (next != null) {
+            out.write(next.bytes);
+            unflushed = true;
+            sentEvent |= next != HEARTBEAT;
+          } else if (unflushed) {
+            out.flush();
+            unflushed = false;
+          } else {
+            return !(oneEvent && sentEvent);
+          }
+        }
+        return true;
+      } catch (IOException | IllegalStateException e) {
+        // The client went away, or its request already finished.
+        return false;
+      }
+    }
+  }
+}
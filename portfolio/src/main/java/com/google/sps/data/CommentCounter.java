@@ -0,0 +1,225 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.PropertyProjection;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Counts comments, in total and per username, without ever scanning them. Each count is split
+ * over several {@code CommentCount} shards, named {@code <counter>/<shard>}, and a change goes
+ * to one shard picked at random, so concurrent posts rarely contend for the same entity. Reading
+ * a count gets all of its shards by key and adds them up.
+ *
+ * <p>Counts read are cached for {@code portfolio.commentCounts.ttlSeconds}. This instance's own
+ * changes are applied to its cache straight away; other instances' show up when it expires.
+ */
+public final class CommentCounter {
+  private static final Logger logger = Logger.getLogger(CommentCounter.class.getName());
+
+  private static final String KIND = "CommentCount";
+  private static final String TOTAL = "total";
+  private static final String USER_PREFIX = "user:";
+
+  // Every post changes the total, but each user's count only changes when they post.
+  private static final int TOTAL_SHARDS = Integer.getInteger("portfolio.commentCounts.shards", 20);
+  private static final int USER_SHARDS = 2;
+
+  private static final long TTL_NANOS =
+      TimeUnit.SECONDS.toNanos(Long.getLong("portfolio.commentCounts.ttlSeconds", 30));
+  private static final int MAX_CACHED = 10000;
+
+  // Attempts at a shard transaction, each on a freshly picked shard.
+  private static final int ATTEMPTS = 3;
+
+  private static final CommentCounter instance =
+      new CommentCounter(DatastoreServiceFactory.getDatastoreService());
+
+  private final DatastoreService datastore;
+  private final Map<String, Cached> counts = new ConcurrentHashMap<>();
+
+  CommentCounter(DatastoreService datastore) {
+    this.datastore = datastore;
+  }
+
+  /** Returns the counter shared by the servlets. */
+  public static CommentCounter getInstance() {
+    return instance;
+  }
+
+  /**
+   * Records comments being added (positive changes) or deleted (negative ones), given as the
+   * change for each username. The total changes by their sum.
+   */
+  public void update(Map<String, Long> changes) {
+    long total = 0;
+    for (Map.Entry<String, Long> change : changes.entrySet()) {
+      if (change.getValue() != 0) {
+        add(USER_PREFIX + change.getKey(), USER_SHARDS, change.getValue());
+        total += change.getValue();
+      }
+    }
+    if (total != 0) {
+      add(TOTAL, TOTAL_SHARDS, total);
+    }
+  }
+
+  /** Returns the number of comments. */
+  public long getTotal() {
+    return read(TOTAL, TOTAL_SHARDS);
+  }
+
+  /** Returns the number of comments posted under {@code username}. */
+  public long getCount(String username) {
+    return read(USER_PREFIX + username, USER_SHARDS);
+  }
+
+  /**
+   * Counts every comment from scratch and overwrites the shards with the result, for comments
+   * stored before counting started. Shards of users who no longer have any comments are deleted.
+   * Comments posted while this runs may be counted twice or not at all, so it is best run while
+   * the site is quiet.
+   */
+  public void recount() {
+    Query usernames = new Query("Comment").addProjection(
+        new PropertyProjection("username", String.class));
+    Map<String, Long> byUser = new HashMap<>();
+    long total = 0;
+    for (Entity entity :
+        datastore.prepare(usernames).asIterable(FetchOptions.Builder.withChunkSize(500))) {
+      byUser.merge((String) entity.getProperty("username"), 1L, Long::sum);
+      total++;
+    }
+
+    List<Entity> shards = new ArrayList<>();
+    addShards(shards, TOTAL, TOTAL_SHARDS, total);
+    for (Map.Entry<String, Long> user : byUser.entrySet()) {
+      addShards(shards, USER_PREFIX + user.getKey(), USER_SHARDS, user.getValue());
+    }
+    // Datastore takes at most 500 entities per put.
+    for (int i = 0; i < shards.size(); i += 500) {
+      datastore.put(shards.subList(i, Math.min(i + 500, shards.size())));
+    }
+
+    Set<Key> written = new HashSet<>();
+    for (Entity shard : shards) {
+      written.add(shard.getKey());
+    }
+    List<Key> stale = new ArrayList<>();
+    for (Entity shard : datastore.prepare(new Query(KIND).setKeysOnly())
+        .asIterable(FetchOptions.Builder.withChunkSize(500))) {
+      if (!written.contains(shard.getKey())) {
+        stale.add(shard.getKey());
+      }
+    }
+    for (int i = 0; i < stale.size(); i += 500) {
+      datastore.delete(stale.subList(i, Math.min(i + 500, stale.size())));
+    }
+    counts.clear();
+  }
+
+  private static void addShards(List<Entity> shards, String counter, int count, long value) {
+    for (int shard = 0; shard < count; shard++) {
+      Entity entity = new Entity(shardKey(counter, shard));
+      entity.setProperty("count", shard == 0 ? value : 0L);
+      shards.add(entity);
+    }
+  }
+
+  private long read(String counter, int shards) {
+    Cached cached = counts.get(counter);
+    if (cached != null && System.nanoTime() - cached.readAt < TTL_NANOS) {
+      return cached.value;
+    }
+
+    List<Key> keys = new ArrayList<>(shards);
+    for (int shard = 0; shard < shards; shard++) {
+      keys.add(shardKey(counter, shard));
+    }
+    long value = 0;
+    for (Entity entity : datastore.get(keys).values()) {
+      value += (long) entity.getProperty("count");
+    }
+    if (counts.size() >= MAX_CACHED) {
+      counts.clear();
+    }
+    counts.put(counter, new Cached(value, System.nanoTime()));
+    return value;
+  }
+
+  private void add(String counter, int shards, long delta) {
+    for (int attempt = 1; ; attempt++) {
+      Key key = shardKey(counter, ThreadLocalRandom.current().nextInt(shards));
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        Entity shard;
+        try {
+          shard = datastore.get(transaction, key);
+        } catch (EntityNotFoundException e) {
+          shard = new Entity(key);
+          shard.setProperty("count", 0L);
+        }
+        shard.setProperty("count", (long) shard.getProperty("count") + delta);
+        datastore.put(transaction, shard);
+        transaction.commit();
+        break;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == ATTEMPTS) {
+          logger.severe("Could not change " + counter + " by " + delta);
+          return;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+    counts.computeIfPresent(
+        counter, (name, cached) -> new Cached(cached.value + delta, cached.readAt));
+  }
+
+  private static Key shardKey(String counter, int shard) {
+    return KeyFactory.createKey(KIND, counter + "/" + shard);
+  }
+
+  private static final class Cached {
+    final long value;
+    final long readAt;
+
+    Cached(long value, long readAt) {
+      this.value = value;
+      this.readAt = readAt;
+    }
+  }
+}
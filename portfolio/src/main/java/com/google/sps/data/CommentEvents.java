@@ -0,0 +1,45 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Collection;
+
+/**
+ * Keeps what is layered over the comment repositories, the page cache and the search index, in
+ * step with them, and pushes new comments to the pages streaming them. Repositories call this once
+ * comments have actually been stored or deleted.
+ */
+public final class CommentEvents {
+  private CommentEvents() {
+    // Disallow instances.
+  }
+
+  /** Records that {@code comments} have been stored. */
+  public static void added(Collection<Comment> comments) {
+    CommentPageCache.getInstance().invalidateAll();
+    for (Comment comment : comments) {
+      CommentSearchIndex.getInstance().add(comment);
+    }
+    CommentBroadcaster.getInstance().publish(comments);
+  }
+
+  /** Records that {@code comments} have been deleted. */
+  public static void deleted(Collection<Comment> comments) {
+    CommentPageCache.getInstance().invalidateAll();
+    for (Comment comment : comments) {
+      CommentSearchIndex.getInstance().remove(comment.getId());
+    }
+  }
+}
@@ -0,0 +1,87 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of comments, and the cursor that continues after it. Pages are immutable, so the JSON
+ * sent to browsers is rendered once per page and then reused for as long as the page is cached.
+ */
+public final class CommentPage {
+  private final List<Comment> comments;
+  private final String nextPageCursor;
+
+  // Rendered on first use. Rendering twice in a race is harmless.
+  private volatile byte[] json;
+
+  public CommentPage(List<Comment> comments, String nextPageCursor) {
+    this.comments = Collections.unmodifiableList(comments);
+    this.nextPageCursor = nextPageCursor;
+  }
+
+  public List<Comment> getComments() {
+    return comments;
+  }
+
+  public String getNextPageCursor() {
+    return nextPageCursor;
+  }
+
+  /**
+   * Returns the page as UTF-8 JSON, {@code {"comments": [...], "nextPageCursor": "..."}}. The
+   * array is returned as it is, so callers must not change it.
+   */
+  public byte[] toJson() {
+    byte[] rendered = json;
+    if (rendered == null) {
+      rendered = render();
+      json = rendered;
+    }
+    return rendered;
+  }
+
+  private byte[] render() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + 192 * comments.size());
+    try (JsonWriter out =
+        new JsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+      out.beginObject();
+      out.name("comments").beginArray();
+      for (Comment comment : comments) {
+        out.beginObject();
+        out.name("id").value(comment.getId());
+        out.name("text").value(comment.getText());
+        out.name("timestamp").value(comment.getTimestamp());
+        out.name("username").value(comment.getUsername());
+        out.name("email").value(comment.getEmail());
+        out.endObject();
+      }
+      out.endArray();
+      out.name("nextPageCursor").value(nextPageCursor);
+      out.endObject();
+    } catch (IOException e) {
+      // Writing to memory doesn't fail.
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+}
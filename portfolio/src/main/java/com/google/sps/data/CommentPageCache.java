@@ -0,0 +1,213 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-memory cache of comment pages, keyed by sort order, page size and start cursor, so that page
+ * loads don't each run a Datastore query. The least recently used page is dropped once the cache
+ * is full.
+ *
+ * <p>Adding or deleting a comment shifts every page, so writers call {@link #invalidateAll}.
+ * That only reaches the cache in this instance; pages also expire after a short while so that
+ * other instances catch up with writes they didn't see.
+ *
+ * <p>A page can also be cached before it has been read, as a {@link #putPending pending} page
+ * whose query is still running, so that whoever asks for it next picks up the answer instead of
+ * starting another query.
+ */
+public final class CommentPageCache {
+  private static final int MAX_PAGES = Integer.getInteger("portfolio.commentCache.pages", 256);
+  private static final long MAX_AGE_NANOS =
+      TimeUnit.SECONDS.toNanos(Long.getLong("portfolio.commentCache.maxAgeSeconds", 30));
+
+  private static final CommentPageCache instance = new CommentPageCache(MAX_PAGES, MAX_AGE_NANOS);
+
+  private final long maxAgeNanos;
+  private final Map<Key, CachedPage> pages;
+
+  // Bumped by every invalidation, so that a page read from Datastore before a write is not
+  // cached after it.
+  private long generation;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  private CommentPageCache(int maxPages, long maxAgeNanos) {
+    this.maxAgeNanos = maxAgeNanos;
+    this.pages = new LinkedHashMap<Key, CachedPage>(16, 0.75f, /* accessOrder= */ true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, CachedPage> eldest) {
+        if (size() > maxPages) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /** Returns the cache shared by the servlets. */
+  public static CommentPageCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Returns the cached page, or null on a miss. Callers that then read the page themselves should
+   * pass {@link #generation} as it was before the read to {@link #put}. Waits for a pending page
+   * to finish loading.
+   */
+  public CommentPage get(String order, int pageSize, String cursor) {
+    Key key = new Key(order, pageSize, cursor);
+    CachedPage entry;
+    synchronized (this) {
+      entry = pages.get(key);
+      if (entry != null && System.nanoTime() - entry.storedAt > maxAgeNanos) {
+        pages.remove(key);
+        entry = null;
+      }
+    }
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+
+    // Outside the lock: a pending page may still be waiting for Datastore.
+    CommentPage page;
+    try {
+      page = entry.page();
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        pages.remove(key, entry);
+      }
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return page;
+  }
+
+  /** Returns true if the page is cached, loaded or pending, without counting a lookup. */
+  public synchronized boolean contains(String order, int pageSize, String cursor) {
+    return pages.containsKey(new Key(order, pageSize, cursor));
+  }
+
+  /** Returns the current generation, which {@link #invalidateAll} moves on. */
+  public synchronized long generation() {
+    return generation;
+  }
+
+  /**
+   * Caches {@code page}, unless the cache has been invalidated since {@code readGeneration}, in
+   * which case the page may already be out of date.
+   */
+  public void put(
+      String order, int pageSize, String cursor, CommentPage page, long readGeneration) {
+    putEntry(new Key(order, pageSize, cursor), new CachedPage(() -> page), readGeneration);
+  }
+
+  /**
+   * Caches a page that is still being read. {@code loader} is called at most once, by the first
+   * lookup, and should wait for the read to finish; if it throws, the page is dropped.
+   */
+  public void putPending(String order, int pageSize, String cursor, Supplier<CommentPage> loader,
+      long readGeneration) {
+    putEntry(new Key(order, pageSize, cursor), new CachedPage(loader), readGeneration);
+  }
+
+  private synchronized void putEntry(Key key, CachedPage entry, long readGeneration) {
+    if (readGeneration == generation) {
+      pages.put(key, entry);
+    }
+  }
+
+  /** Drops every cached page. Call after adding or deleting comments. */
+  public synchronized void invalidateAll() {
+    generation++;
+    pages.clear();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  /** Returns the fraction of lookups answered from the cache, or 0 before the first lookup. */
+  public double getHitRate() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  private static final class Key {
+    final String order;
+    final int pageSize;
+    final String cursor;
+
+    Key(String order, int pageSize, String cursor) {
+      this.order = order;
+      this.pageSize = pageSize;
+      this.cursor = cursor;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      // The first page has no cursor.
+      return pageSize == key.pageSize && order.equals(key.order)
+          && Objects.equals(cursor, key.cursor);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(order, pageSize, cursor);
+    }
+  }
+
+  private static final class CachedPage {
+    final long storedAt = System.nanoTime();
+    private Supplier<CommentPage> loader;
+    private CommentPage page;
+
+    CachedPage(Supplier<CommentPage> loader) {
+      this.loader = loader;
+    }
+
+    synchronized CommentPage page() {
+      if (page == null) {
+        page = loader.get();
+        loader = null;
+      }
+      return page;
+    }
+  }
+}
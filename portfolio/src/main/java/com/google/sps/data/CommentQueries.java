@@ -0,0 +1,120 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.QueryResultList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The Datastore queries behind the comment list. Callers that don't need the comments themselves
+ * get keys-only queries, which Datastore answers from the index without reading any entity.
+ *
+ * <p>The composite indexes these and the other portfolio queries need are declared in {@code
+ * WEB-INF/datastore-indexes.xml}.
+ */
+public final class CommentQueries {
+  public static final String OLDEST = "oldest";
+  public static final String NEWEST = "newest";
+
+  // The cursor the page script sends for the first page.
+  private static final String NO_CURSOR = "null";
+
+  private CommentQueries() {
+    // Disallow instances.
+  }
+
+  /** Returns a query for every comment, oldest first for {@link #OLDEST} and newest otherwise. */
+  public static Query byTime(String order) {
+    SortDirection direction =
+        OLDEST.equals(order) ? SortDirection.ASCENDING : SortDirection.DESCENDING;
+    return new Query("Comment").addSort("timestamp", direction);
+  }
+
+  /**
+   * Reads the page of {@code pageSize} comments starting at {@code cursor}.
+   *
+   * @throws IllegalArgumentException if the cursor is not valid.
+   */
+  public static CommentPage readPage(
+      DatastoreService datastore, String order, int pageSize, String cursor) {
+    QueryResultList<Entity> entities =
+        datastore.prepare(byTime(order)).asQueryResultList(fetchOptions(pageSize, cursor));
+    return toPage(entities);
+  }
+
+  /**
+   * Starts reading the page of {@code pageSize} comments starting at {@code cursor}, and returns
+   * straight away. The returned supplier waits for the query to finish and builds the page.
+   *
+   * @throws IllegalArgumentException if the cursor is not valid.
+   */
+  public static Supplier<CommentPage> readPageAsync(
+      AsyncDatastoreService datastore, String order, int pageSize, String cursor) {
+    // Fetch the whole page in the first batch, so that nothing is left to fetch on the request
+    // thread that picks it up.
+    FetchOptions fetchOptions = fetchOptions(pageSize, cursor).prefetchSize(pageSize);
+    QueryResultList<Entity> entities =
+        datastore.prepare(byTime(order)).asQueryResultList(fetchOptions);
+    return () -> toPage(entities);
+  }
+
+  /**
+   * Returns the cursor that follows the page of {@code pageSize} comments starting at {@code
+   * cursor}, reading keys only.
+   *
+   * @throws IllegalArgumentException if the cursor is not valid.
+   */
+  public static String nextCursor(
+      DatastoreService datastore, String order, int pageSize, String cursor) {
+    QueryResultList<Entity> keys = datastore.prepare(byTime(order).setKeysOnly())
+        .asQueryResultList(fetchOptions(pageSize, cursor));
+    return keys.getCursor().toWebSafeString();
+  }
+
+  /** Builds a {@code Comment} from a full {@code Comment} entity. */
+  public static Comment toComment(Entity entity) {
+    long id = entity.getKey().getId();
+    String text = (String) entity.getProperty("text");
+    long timestamp = (long) entity.getProperty("timestamp");
+    String username = (String) entity.getProperty("username");
+    String email = (String) entity.getProperty("email");
+    return new Comment(id, text, timestamp, username, email);
+  }
+
+  private static CommentPage toPage(QueryResultList<Entity> entities) {
+    List<Comment> comments = new ArrayList<>();
+    for (Entity entity : entities) {
+      comments.add(toComment(entity));
+    }
+    return new CommentPage(comments, entities.getCursor().toWebSafeString());
+  }
+
+  private static FetchOptions fetchOptions(int pageSize, String cursor) {
+    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(pageSize);
+    if (cursor != null && !cursor.equals(NO_CURSOR)) {
+      fetchOptions.startCursor(Cursor.fromWebSafeString(cursor));
+    }
+    return fetchOptions;
+  }
+}
@@ -0,0 +1,86 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Where comments are stored. Pages are read newest first, or oldest first for {@link
+ * CommentQueries#OLDEST}, and continue from an opaque cursor; {@code "null"} or null starts at
+ * the beginning. {@link Repositories#comments()} returns the one the servlets use.
+ *
+ * <p>Implementations tell {@link CommentEvents} about every comment stored or deleted, so that
+ * the caches and the search index layered over them stay consistent whichever backend is used.
+ */
+public interface CommentRepository {
+  /**
+   * Stores a new comment and returns its ID. The comment may show up in pages a little later
+   * than this returns.
+   */
+  long add(String text, long timestamp, String email, String username);
+
+  /**
+   * Reads the page of {@code pageSize} comments starting at {@code cursor}.
+   *
+   * @throws IllegalArgumentException if the cursor is not valid.
+   */
+  CommentPage readPage(String order, int pageSize, String cursor);
+
+  /**
+   * Starts reading a page, like {@link #readPage}, and returns a supplier that finishes reading
+   * it. Backends without asynchronous reads do all the work in the supplier.
+   *
+   * @throws IllegalArgumentException if the cursor is not valid.
+   */
+  default Supplier<CommentPage> readPageAsync(String order, int pageSize, String cursor) {
+    return () -> readPage(order, pageSize, cursor);
+  }
+
+  /**
+   * Returns the cursor that follows the page of {@code pageSize} comments starting at {@code
+   * cursor}, without reading the comments themselves where the backend allows it.
+   *
+   * @throws IllegalArgumentException if the cursor is not valid.
+   */
+  String nextCursor(String order, int pageSize, String cursor);
+
+  /** Returns every comment, oldest first. */
+  Iterable<Comment> oldestFirst();
+
+  /**
+   * Returns the IDs of the comments matching every filter that isn't null: posted under {@code
+   * username}, by {@code email}, at or after {@code from}, and before {@code to}. The IDs are
+   * produced as they are iterated, so that large matches aren't held in memory where the backend
+   * allows it.
+   */
+  Iterable<Long> findIds(String username, String email, Long from, Long to);
+
+  /** Deletes the comments with {@code ids} and returns the ones that existed. */
+  List<Comment> delete(Collection<Long> ids);
+
+  /** Returns the number of comments. */
+  long count();
+
+  /** Returns the number of comments posted under {@code username}. */
+  long count(String username);
+
+  /**
+   * Counts the comments from scratch, for backends whose counts are kept separately from the
+   * comments and may have drifted from them. The others have nothing to do.
+   */
+  default void recount() {}
+}
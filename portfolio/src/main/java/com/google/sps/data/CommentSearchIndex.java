@@ -0,0 +1,374 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/**
+ * In-memory inverted index over the text and username of every comment, so that searching never
+ * touches Datastore. Comments are numbered in the order they are added, and each word keeps the
+ * numbers of the comments it appears in as gaps from the previous number, written as varints;
+ * most gaps fit in a byte. Every {@value Postings#BLOCK} numbers a list notes where it is, so that
+ * a search can start decoding anywhere. A search for several words returns the comments that have
+ * all of them, newest first: it decodes the rarest word's list a block at a time from the newest
+ * end, and only looks at the blocks of the other words' lists those candidates could be in, so a
+ * page of a common word costs a block or two however long its list is.
+ *
+ * <p>Deleted comments are only marked as such and skipped when searching, since their numbers
+ * can't be taken out of the middle of a postings list.
+ *
+ * <p>The index is read from the comment repository the first time it is used, which {@link
+ * CommentSearchIndexListener} makes happen at startup, and is then kept up to date through {@link
+ * CommentEvents}.
+ */
+public final class CommentSearchIndex {
+  private static final Logger logger = Logger.getLogger(CommentSearchIndex.class.getName());
+
+  private static final CommentSearchIndex instance = load(Repositories.comments());
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // All guarded by lock. comments[n] is comment number n.
+  private final Map<String, Postings> postings = new HashMap<>();
+  private final IdTable numbers = new IdTable();
+  private final BitSet deleted = new BitSet();
+  private Comment[] comments = new Comment[1024];
+  private int size;
+
+  /** Returns the index shared by the servlets. */
+  public static CommentSearchIndex getInstance() {
+    return instance;
+  }
+
+  /** Returns an index of every comment in {@code comments}. */
+  static CommentSearchIndex load(CommentRepository comments) {
+    long start = System.nanoTime();
+    CommentSearchIndex index = new CommentSearchIndex();
+    for (Comment comment : comments.oldestFirst()) {
+      index.add(comment);
+    }
+    logger.info("Indexed " + index.size + " comments in "
+        + (System.nanoTime() - start) / 1000000 + " ms");
+    return index;
+  }
+
+  /** Adds {@code comment}, unless a comment with its ID is already in the index. */
+  public void add(Comment comment) {
+    Set<String> words = new LinkedHashSet<>();
+    tokenize(comment.getText(), words);
+    tokenize(comment.getUsername(), words);
+
+    lock.writeLock().lock();
+    try {
+      if (numbers.get(comment.getId()) >= 0) {
+        return;
+      }
+      int number = size++;
+      if (number == comments.length) {
+        comments = Arrays.copyOf(comments, number * 2);
+      }
+      comments[number] = comment;
+      numbers.put(comment.getId(), number);
+      for (String word : words) {
+        postings.computeIfAbsent(word, w -> new Postings()).add(number);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Removes the comment with ID {@code id}, if it is in the index. */
+  public void remove(long id) {
+    lock.writeLock().lock();
+    try {
+      int number = numbers.get(id);
+      if (number >= 0) {
+        deleted.set(number);
+        comments[number] = null;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns up to {@code pageSize} of the comments containing every word of {@code query}, newest
+   * first, skipping the first {@code offset}. The page's cursor is the offset of the next page,
+   * or null if there are no more matches. A query without any words matches nothing.
+   *
+   * @throws IllegalArgumentException if {@code offset} is negative or {@code pageSize} isn't
+   *     positive.
+   */
+  public CommentPage search(String query, int offset, int pageSize) {
+    if (offset < 0 || pageSize <= 0) {
+      throw new IllegalArgumentException("Invalid offset or page size.");
+    }
+    Set<String> words = new LinkedHashSet<>();
+    tokenize(query, words);
+
+    List<Comment> page = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      List<Postings> lists = postingsOf(words);
+      if (lists.isEmpty()) {
+        return new CommentPage(page, null);
+      }
+      // Start from the rarest word, so the candidates only get fewer.
+      lists.sort(Comparator.comparingInt(list -> list.count));
+      Postings rarest = lists.get(0);
+      int[] candidates = new int[Postings.BLOCK];
+      int[] scratch = new int[Postings.BLOCK];
+      int skipped = 0;
+      // Newest first, which is the reverse of the order the comments were added.
+      for (int block = rarest.blockCount() - 1; block >= 0; block--) {
+        int count = rarest.decodeBlock(block, candidates);
+        for (int l = 1; l < lists.size() && count > 0; l++) {
+          count = lists.get(l).retain(candidates, count, scratch);
+        }
+        for (int i = count - 1; i >= 0; i--) {
+          int number = candidates[i];
+          if (deleted.get(number)) {
+            continue;
+          }
+          if (page.size() == pageSize) {
+            return new CommentPage(page, Integer.toString(offset + page.size()));
+          }
+          if (skipped++ >= offset) {
+            page.add(comments[number]);
+          }
+        }
+      }
+      return new CommentPage(page, null);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Returns the postings of each of {@code words}, or nothing if any word has none. */
+  private List<Postings> postingsOf(Set<String> words) {
+    List<Postings> lists = new ArrayList<>();
+    for (String word : words) {
+      Postings list = postings.get(word);
+      if (list == null) {
+        return new ArrayList<>();
+      }
+      lists.add(list);
+    }
+    return lists;
+  }
+
+  /** Adds the lower-cased words of {@code text}, runs of letters and digits, to {@code words}. */
+  private static void tokenize(String text, Set<String> words) {
+    if (text == null) {
+      return;
+    }
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (inWord && start < 0) {
+        start = i;
+      } else if (!inWord && start >= 0) {
+        words.add(text.substring(start, i).toLowerCase());
+        start = -1;
+      }
+    }
+  }
+
+  /** The increasing comment numbers for one word, as varint gaps. */
+  static final class Postings {
+    // How many numbers there are in each block that can be decoded on its own.
+    static final int BLOCK = 128;
+
+    private byte[] bytes = new byte[4];
+    private int length;
+    private int last = -1;
+    int count;
+
+    // Where block b starts in bytes, and the number just before its first one (-1 for block 0).
+    private int[] blockStarts = new int[1];
+    private int[] blockBases = new int[1];
+
+    void add(int number) {
+      if (count % BLOCK == 0) {
+        int block = count / BLOCK;
+        if (block == blockStarts.length) {
+          blockStarts = Arrays.copyOf(blockStarts, block * 2);
+          blockBases = Arrays.copyOf(blockBases, block * 2);
+        }
+        blockStarts[block] = length;
+        blockBases[block] = last;
+      }
+      if (length + 5 > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+      }
+      int gap = number - last;
+      while (gap >= 0x80) {
+        bytes[length++] = (byte) (gap | 0x80);
+        gap >>>= 7;
+      }
+      bytes[length++] = (byte) gap;
+      last = number;
+      count++;
+    }
+
+    int blockCount() {
+      return (count + BLOCK - 1) / BLOCK;
+    }
+
+    /** Decodes block {@code block} into {@code numbers}, and returns how many it holds. */
+    int decodeBlock(int block, int[] numbers) {
+      int n = Math.min(BLOCK, count - block * BLOCK);
+      int number = blockBases[block];
+      int position = blockStarts[block];
+      for (int i = 0; i < n; i++) {
+        int gap = 0;
+        for (int shift = 0; ; shift += 7) {
+          byte b = bytes[position++];
+          gap |= (b & 0x7f) << shift;
+          if (b >= 0) {
+            break;
+          }
+        }
+        number += gap;
+        numbers[i] = number;
+      }
+      return n;
+    }
+
+    /**
+     * Keeps the first {@code count} of the increasing {@code candidates} that are also in this
+     * list, moving them to the front, and returns how many were kept. Only the blocks that could
+     * hold a candidate are decoded, into {@code scratch}, which needs room for a block.
+     */
+    int retain(int[] candidates, int count, int[] scratch) {
+      int kept = 0;
+      int c = 0;
+      int block = 0;
+      int blocks = blockCount();
+      while (c < count) {
+        block = blockEndingAtOrAfter(candidates[c], block);
+        if (block == blocks) {
+          break;
+        }
+        int n = decodeBlock(block, scratch);
+        int i = 0;
+        while (c < count && i < n) {
+          if (candidates[c] < scratch[i]) {
+            c++;
+          } else if (candidates[c] > scratch[i]) {
+            i++;
+          } else {
+            candidates[kept++] = candidates[c++];
+            i++;
+          }
+        }
+        block++;
+      }
+      return kept;
+    }
+
+    /**
+     * Returns the first block from {@code from} on whose last number is at least {@code number},
+     * or the block count if there is none.
+     */
+    private int blockEndingAtOrAfter(int number, int from) {
+      int low = from;
+      int high = blockCount();
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (blockEnd(middle) < number) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    private int blockEnd(int block) {
+      return block + 1 < blockCount() ? blockBases[block + 1] : last;
+    }
+  }
+
+  /** Open-addressing map from comment ID to comment number, without boxing either. */
+  static final class IdTable {
+    private long[] ids = new long[2048];
+    private int[] numbers = new int[2048];
+    private boolean[] used = new boolean[2048];
+    private int size;
+
+    /** Returns the number for {@code id}, or -1 if there is none. */
+    int get(long id) {
+      int mask = ids.length - 1;
+      for (int slot = slot(id, mask); used[slot]; slot = (slot + 1) & mask) {
+        if (ids[slot] == id) {
+          return numbers[slot];
+        }
+      }
+      return -1;
+    }
+
+    /** Maps {@code id}, which isn't in the table yet, to {@code number}. */
+    void put(long id, int number) {
+      if (2 * (size + 1) > ids.length) {
+        grow();
+      }
+      insert(id, number);
+      size++;
+    }
+
+    private void insert(long id, int number) {
+      int mask = ids.length - 1;
+      int slot = slot(id, mask);
+      while (used[slot]) {
+        slot = (slot + 1) & mask;
+      }
+      ids[slot] = id;
+      numbers[slot] = number;
+      used[slot] = true;
+    }
+
+    private void grow() {
+      long[] oldIds = ids;
+      int[] oldNumbers = numbers;
+      boolean[] oldUsed = used;
+      ids = new long[oldIds.length * 2];
+      numbers = new int[oldIds.length * 2];
+      used = new boolean[oldIds.length * 2];
+      for (int i = 0; i < oldIds.length; i++) {
+        if (oldUsed[i]) {
+          insert(oldIds[i], oldNumbers[i]);
+        }
+      }
+    }
+
+    // Datastore IDs are scattered, but mixing keeps sequential test IDs from clustering.
+    private static int slot(long id, int mask) {
+      long hash = id * 0x9E3779B97F4A7C15L;
+      return (int) (hash >>> 32) & mask;
+    }
+  }
+}
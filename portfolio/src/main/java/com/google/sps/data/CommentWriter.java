@@ -0,0 +1,352 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.ThreadManager;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind buffer for new comments. Each comment gets its ID straight away, from a block
+ * reserved with {@code allocateIds}, and is queued; a background thread then stores queued
+ * comments in batches with one multi-entity {@code put}, as soon as a batch is full or the oldest
+ * comment in it has waited {@code portfolio.commentWriter.flushMillis}.
+ *
+ * <p>Background threads need an App Engine instance with manual or basic scaling. With automatic
+ * scaling starting the thread fails, and in a plain servlet container there is no App Engine
+ * environment to ask for one; either way, as whenever the queue is full or the writer has been
+ * closed, comments are stored before {@link #add} returns instead, and {@link #add} throws if they
+ * can't be. {@link #close} stores everything still queued; {@link CommentWriterListener} calls it
+ * when the app shuts down.
+ *
+ * <p>A comment's ID is handed out before the comment is stored, so it can be deleted while it is
+ * still queued. {@link #cancel} drops such comments, so that they aren't stored afterwards, and
+ * waits for any store already under way, so that a delete straight after it finds what it stored.
+ */
+public final class CommentWriter {
+  private static final Logger logger = Logger.getLogger(CommentWriter.class.getName());
+
+  // Datastore takes at most 500 entities per put.
+  private static final int MAX_BATCH =
+      Math.min(Integer.getInteger("portfolio.commentWriter.batch", 100), 500);
+  private static final long FLUSH_MILLIS = Long.getLong("portfolio.commentWriter.flushMillis", 200);
+  private static final int QUEUE_CAPACITY = 10000;
+  private static final long CLOSE_TIMEOUT_SECONDS = 20;
+
+  // How many comment IDs to reserve with each allocateIds call.
+  private static final int ID_BLOCK = 50;
+
+  private static final int PUT_ATTEMPTS = 3;
+
+  private static final CommentWriter instance =
+      new CommentWriter(DatastoreServiceFactory.getDatastoreService(), backgroundThreads());
+
+  private final DatastoreService datastore;
+  private final BlockingQueue<Entity> pending = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+  // Null when comments are written synchronously.
+  private final ExecutorService flusher;
+
+  // Held for reading while comments are stored, and for writing while comments are cancelled.
+  private final ReadWriteLock storing = new ReentrantReadWriteLock();
+
+  // Guarded by this.
+  private Iterator<Key> ids = Collections.emptyIterator();
+  private boolean closed;
+  // Comments that have an ID but haven't been stored yet.
+  private final Map<Key, Entity> unstored = new HashMap<>();
+
+  /** Creates a writer whose flusher comes from {@code threads}, or that writes synchronously. */
+  CommentWriter(DatastoreService datastore, ThreadFactory threads) {
+    this.datastore = datastore;
+    this.flusher = threads == null ? null : startFlusher(threads);
+  }
+
+  /** Returns the writer shared by the servlets. */
+  public static CommentWriter getInstance() {
+    return instance;
+  }
+
+  /**
+   * Stores a new comment, now or shortly, and returns its ID. The comment shows up in queries
+   * once it has been stored.
+   *
+   * @throws RuntimeException if the comment was to be stored straight away and couldn't be.
+   */
+  public long add(String text, long timestamp, String email, String username) {
+    Entity commentEntity = new Entity(nextKey());
+    commentEntity.setProperty("text", text);
+    commentEntity.setProperty("timestamp", timestamp);
+    commentEntity.setProperty("email", email);
+    commentEntity.setProperty("username", username);
+
+    synchronized (this) {
+      unstored.put(commentEntity.getKey(), commentEntity);
+      // Checked under the lock so that nothing is queued after close() has started draining.
+      if (flusher != null && !closed && pending.offer(commentEntity)) {
+        return commentEntity.getKey().getId();
+      }
+    }
+    put(Collections.singletonList(commentEntity));
+    return commentEntity.getKey().getId();
+  }
+
+  /** Stops queueing, and stores every queued comment before returning. */
+  public void close() {
+    synchronized (this) {
+      closed = true;
+    }
+    if (flusher != null) {
+      flusher.shutdown();
+      try {
+        flusher.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    // Anything the flusher didn't get to.
+    List<Entity> rest = new ArrayList<>();
+    pending.drainTo(rest);
+    for (int i = 0; i < rest.size(); i += MAX_BATCH) {
+      putQueued(rest.subList(i, Math.min(i + MAX_BATCH, rest.size())));
+    }
+  }
+
+  /**
+   * Makes sure that none of the comments with {@code ids} that haven't been stored yet ever are,
+   * and returns those comments. Once this returns, every other comment with one of {@code ids}
+   * that was added has been stored, or has failed to be.
+   */
+  public List<Comment> cancel(Collection<Long> ids) {
+    List<Comment> cancelled = new ArrayList<>();
+    // Waits for stores under way, and keeps new ones from starting until the comments are gone.
+    storing.writeLock().lock();
+    try {
+      Set<Key> keys = new HashSet<>();
+      synchronized (this) {
+        for (long id : ids) {
+          Entity entity = unstored.remove(KeyFactory.createKey("Comment", id));
+          if (entity != null) {
+            keys.add(entity.getKey());
+            cancelled.add(CommentQueries.toComment(entity));
+          }
+        }
+      }
+      if (!keys.isEmpty()) {
+        pending.removeIf(entity -> keys.contains(entity.getKey()));
+      }
+    } finally {
+      storing.writeLock().unlock();
+    }
+    return cancelled;
+  }
+
+  /** Returns how many comments are queued and not yet stored. */
+  int getQueued() {
+    return pending.size();
+  }
+
+  private synchronized Key nextKey() {
+    if (!ids.hasNext()) {
+      ids = datastore.allocateIds("Comment", ID_BLOCK).iterator();
+    }
+    return ids.next();
+  }
+
+  private void flushUntilClosed() {
+    List<Entity> batch = new ArrayList<>(MAX_BATCH);
+    while (true) {
+      try {
+        Entity first = pending.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          synchronized (this) {
+            if (closed && pending.isEmpty()) {
+              return;
+            }
+          }
+          continue;
+        }
+        batch.add(first);
+        // Give the batch until FLUSH_MILLIS after its first comment to fill up.
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_MILLIS);
+        while (batch.size() < MAX_BATCH) {
+          Entity next = pending.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+      } catch (InterruptedException e) {
+        // close() stores whatever is still queued.
+        putQueued(batch);
+        return;
+      } catch (RuntimeException e) {
+        // Keep going; a dead flusher would leave everything after this queued until close().
+        logger.log(Level.SEVERE, "Comment writer failed, carrying on", e);
+      }
+      putQueued(batch);
+      batch.clear();
+    }
+  }
+
+  /**
+   * Stores a batch that was queued. Nobody is waiting to hear whether it was stored, so a failure
+   * has only been logged.
+   */
+  private void putQueued(List<Entity> batch) {
+    try {
+      put(batch);
+    } catch (RuntimeException e) {
+      // put logged it.
+    }
+  }
+
+  /**
+   * Stores the comments in {@code batch} that haven't been cancelled; see {@link #store}.
+   *
+   * @throws RuntimeException the last failure, if every attempt to store them failed.
+   */
+  private void put(List<Entity> batch) {
+    storing.readLock().lock();
+    try {
+      // Comments that were cancelled while they waited are left out.
+      List<Entity> live = new ArrayList<>(batch.size());
+      synchronized (this) {
+        for (Entity entity : batch) {
+          if (unstored.containsKey(entity.getKey())) {
+            live.add(entity);
+          }
+        }
+      }
+      if (!live.isEmpty()) {
+        store(live);
+      }
+    } finally {
+      synchronized (this) {
+        for (Entity entity : batch) {
+          unstored.remove(entity.getKey());
+        }
+      }
+      storing.readLock().unlock();
+    }
+  }
+
+  /**
+   * Stores {@code batch}, retrying failures a few times before giving up on it, then updates the
+   * counts, search index and streams. Once the comments are stored, failing to do any of that is
+   * only logged, since the comments themselves are safe.
+   *
+   * @throws RuntimeException the last failure, if every attempt to store them failed.
+   */
+  private void store(List<Entity> batch) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        datastore.put(batch);
+        break;
+      } catch (RuntimeException e) {
+        if (attempt == PUT_ATTEMPTS) {
+          List<Key> keys = new ArrayList<>();
+          for (Entity entity : batch) {
+            keys.add(entity.getKey());
+          }
+          logger.log(Level.SEVERE, "Could not store comments " + keys, e);
+          throw e;
+        }
+        logger.log(Level.WARNING, "Storing comments failed, retrying", e);
+        try {
+          Thread.sleep(100L << attempt);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    List<Comment> comments = new ArrayList<>();
+    Map<String, Long> added = new HashMap<>();
+    for (Entity entity : batch) {
+      Comment comment = CommentQueries.toComment(entity);
+      comments.add(comment);
+      added.merge(comment.getUsername(), 1L, Long::sum);
+    }
+    try {
+      CommentCounter.getInstance().update(added);
+    } catch (RuntimeException e) {
+      // CommentCounter.recount() puts the counts right.
+      logger.log(Level.WARNING, "Could not count " + comments.size() + " stored comments", e);
+    }
+    try {
+      CommentEvents.added(comments);
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING,
+          "Could not index or publish " + comments.size() + " stored comments", e);
+    }
+  }
+
+  /**
+   * Starts the thread that stores queued comments, or returns null if it can't be started. Where
+   * background threads aren't allowed, it is creating the thread that fails, not asking for the
+   * factory.
+   */
+  private ExecutorService startFlusher(ThreadFactory threads) {
+    ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = threads.newThread(runnable);
+      if (thread == null) {
+        throw new IllegalStateException("No thread for the comment writer");
+      }
+      return thread;
+    });
+    try {
+      executor.execute(this::flushUntilClosed);
+      return executor;
+    } catch (RuntimeException | LinkageError e) {
+      // The SDK's thread factory can also fail while loading its own classes.
+      executor.shutdownNow();
+      logger.log(Level.INFO,
+          "Background threads can't be started, so comments will be stored as they are posted.", e);
+      return null;
+    }
+  }
+
+  /** Returns the factory for threads that outlive requests, or null if this instance has none. */
+  private static ThreadFactory backgroundThreads() {
+    try {
+      return ThreadManager.backgroundThreadFactory();
+    } catch (RuntimeException e) {
+      logger.info("No background threads, so comments will be stored as they are posted.");
+      return null;
+    }
+  }
+}
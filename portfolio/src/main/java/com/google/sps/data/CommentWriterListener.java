@@ -0,0 +1,37 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.LifecycleManager;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Stores every queued comment before the app shuts down, whether the container tears the app down
+ * or App Engine stops the instance.
+ */
+@WebListener
+public class CommentWriterListener implements ServletContextListener {
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+    LifecycleManager.getInstance().setShutdownHook(() -> CommentWriter.getInstance().close());
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {
+    CommentWriter.getInstance().close();
+  }
+}
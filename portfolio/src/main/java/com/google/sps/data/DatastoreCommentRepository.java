@@ -0,0 +1,163 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
+import com.google.appengine.api.datastore.Query.Filter;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Comments stored as {@code Comment} entities. New comments go through the {@link CommentWriter}
+ * buffer, pages are read with {@link CommentQueries}, and counts come from the {@link
+ * CommentCounter} shards rather than from queries.
+ */
+final class DatastoreCommentRepository implements CommentRepository {
+  // Datastore gets and deletes at most this many keys per call.
+  private static final int BATCH_SIZE = 500;
+
+  private final DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+  @Override
+  public long add(String text, long timestamp, String email, String username) {
+    return CommentWriter.getInstance().add(text, timestamp, email, username);
+  }
+
+  @Override
+  public CommentPage readPage(String order, int pageSize, String cursor) {
+    return CommentQueries.readPage(datastore, order, pageSize, cursor);
+  }
+
+  @Override
+  public Supplier<CommentPage> readPageAsync(String order, int pageSize, String cursor) {
+    return CommentQueries.readPageAsync(
+        DatastoreServiceFactory.getAsyncDatastoreService(), order, pageSize, cursor);
+  }
+
+  @Override
+  public String nextCursor(String order, int pageSize, String cursor) {
+    return CommentQueries.nextCursor(datastore, order, pageSize, cursor);
+  }
+
+  @Override
+  public Iterable<Comment> oldestFirst() {
+    return map(CommentQueries.byTime(CommentQueries.OLDEST), CommentQueries::toComment);
+  }
+
+  @Override
+  public Iterable<Long> findIds(String username, String email, Long from, Long to) {
+    List<Filter> filters = new ArrayList<>();
+    if (username != null) {
+      filters.add(new FilterPredicate("username", FilterOperator.EQUAL, username));
+    }
+    if (email != null) {
+      filters.add(new FilterPredicate("email", FilterOperator.EQUAL, email));
+    }
+    if (from != null) {
+      filters.add(new FilterPredicate("timestamp", FilterOperator.GREATER_THAN_OR_EQUAL, from));
+    }
+    if (to != null) {
+      filters.add(new FilterPredicate("timestamp", FilterOperator.LESS_THAN, to));
+    }
+    Query query = new Query("Comment").setKeysOnly();
+    if (filters.size() == 1) {
+      query.setFilter(filters.get(0));
+    } else if (filters.size() > 1) {
+      query.setFilter(CompositeFilterOperator.and(filters));
+    }
+    return map(query, entity -> entity.getKey().getId());
+  }
+
+  @Override
+  public List<Comment> delete(Collection<Long> ids) {
+    // Comments still queued in the writer have been neither stored nor counted, so they are only
+    // dropped from the queue. Once that returns, the rest of the comments are in the Datastore.
+    List<Comment> unstored = CommentWriter.getInstance().cancel(ids);
+
+    List<Comment> deleted = new ArrayList<>();
+    List<Key> keys = new ArrayList<>();
+    for (long id : ids) {
+      keys.add(KeyFactory.createKey("Comment", id));
+    }
+    for (int i = 0; i < keys.size(); i += BATCH_SIZE) {
+      // The counts need each comment's username, so the comments are read before they go. Keys
+      // of comments that don't exist drop out here.
+      List<Key> batch = keys.subList(i, Math.min(i + BATCH_SIZE, keys.size()));
+      Map<Key, Entity> entities = datastore.get(batch);
+      datastore.delete(entities.keySet());
+      for (Entity entity : entities.values()) {
+        deleted.add(CommentQueries.toComment(entity));
+      }
+    }
+
+    Map<String, Long> changes = new HashMap<>();
+    for (Comment comment : deleted) {
+      changes.merge(comment.getUsername(), -1L, Long::sum);
+    }
+    CommentCounter.getInstance().update(changes);
+    deleted.addAll(unstored);
+    CommentEvents.deleted(deleted);
+    return deleted;
+  }
+
+  @Override
+  public long count() {
+    return CommentCounter.getInstance().getTotal();
+  }
+
+  @Override
+  public long count(String username) {
+    return CommentCounter.getInstance().getCount(username);
+  }
+
+  @Override
+  public void recount() {
+    CommentCounter.getInstance().recount();
+  }
+
+  /** Returns the results of {@code query}, fetched in batches as they are iterated. */
+  private <T> Iterable<T> map(Query query, Function<Entity, T> mapper) {
+    Iterable<Entity> entities =
+        datastore.prepare(query).asIterable(FetchOptions.Builder.withChunkSize(BATCH_SIZE));
+    return () -> new Iterator<T>() {
+      private final Iterator<Entity> results = entities.iterator();
+
+      @Override
+      public boolean hasNext() {
+        return results.hasNext();
+      }
+
+      @Override
+      public T next() {
+        return mapper.apply(results.next());
+      }
+    };
+  }
+}
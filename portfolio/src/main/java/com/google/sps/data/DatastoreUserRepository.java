@@ -0,0 +1,35 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * Usernames stored as {@code UserInfo} and {@code Username} entities, read through the {@link
+ * UserProfileCache} and claimed through the {@link UsernameRegistry}.
+ */
+final class DatastoreUserRepository implements UserRepository {
+  @Override
+  public String getUsername(String userId) {
+    return UserProfileCache.getInstance().getUsername(userId);
+  }
+
+  @Override
+  public boolean claimUsername(String username, String userId) {
+    if (!UsernameRegistry.getInstance().claim(username, userId)) {
+      return false;
+    }
+    UserProfileCache.getInstance().setUsername(userId, username);
+    return true;
+  }
+}
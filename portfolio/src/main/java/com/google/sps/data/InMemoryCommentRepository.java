@@ -0,0 +1,145 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Comments kept in this instance's memory, and lost when it stops. They are held in a concurrent
+ * skip list ordered by timestamp (then ID, to tell apart comments posted in the same millisecond),
+ * so a page is a walk from the cursor's position in either direction, and readers never block
+ * writers. A cursor is the timestamp and ID of the last comment on the page before.
+ */
+final class InMemoryCommentRepository implements CommentRepository {
+  private static final Comparator<Comment> BY_TIME =
+      Comparator.comparingLong(Comment::getTimestamp).thenComparingLong(Comment::getId);
+
+  private final NavigableSet<Comment> byTime = new ConcurrentSkipListSet<>(BY_TIME);
+  private final Map<Long, Comment> byId = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> countsByUser = new ConcurrentHashMap<>();
+  private final AtomicLong lastId = new AtomicLong();
+
+  @Override
+  public long add(String text, long timestamp, String email, String username) {
+    Comment comment = new Comment(lastId.incrementAndGet(), text, timestamp, username, email);
+    byId.put(comment.getId(), comment);
+    byTime.add(comment);
+    countsByUser.computeIfAbsent(username, name -> new LongAdder()).increment();
+    CommentEvents.added(Collections.singletonList(comment));
+    return comment.getId();
+  }
+
+  @Override
+  public CommentPage readPage(String order, int pageSize, String cursor) {
+    List<Comment> comments = new ArrayList<>(pageSize);
+    Iterator<Comment> page = after(order, cursor).iterator();
+    while (comments.size() < pageSize && page.hasNext()) {
+      comments.add(page.next());
+    }
+    String nextCursor = comments.isEmpty() ? cursor : toCursor(comments.get(comments.size() - 1));
+    return new CommentPage(comments, nextCursor);
+  }
+
+  @Override
+  public String nextCursor(String order, int pageSize, String cursor) {
+    Comment last = null;
+    Iterator<Comment> page = after(order, cursor).iterator();
+    for (int i = 0; i < pageSize && page.hasNext(); i++) {
+      last = page.next();
+    }
+    return last == null ? cursor : toCursor(last);
+  }
+
+  @Override
+  public Iterable<Comment> oldestFirst() {
+    return Collections.unmodifiableSet(byTime);
+  }
+
+  @Override
+  public Iterable<Long> findIds(String username, String email, Long from, Long to) {
+    List<Long> ids = new ArrayList<>();
+    for (Comment comment : byTime) {
+      if ((username == null || username.equals(comment.getUsername()))
+          && (email == null || email.equals(comment.getEmail()))
+          && (from == null || comment.getTimestamp() >= from)
+          && (to == null || comment.getTimestamp() < to)) {
+        ids.add(comment.getId());
+      }
+    }
+    return ids;
+  }
+
+  @Override
+  public List<Comment> delete(Collection<Long> ids) {
+    List<Comment> deleted = new ArrayList<>();
+    for (long id : ids) {
+      Comment comment = byId.remove(id);
+      if (comment != null) {
+        byTime.remove(comment);
+        countsByUser.get(comment.getUsername()).decrement();
+        deleted.add(comment);
+      }
+    }
+    CommentEvents.deleted(deleted);
+    return deleted;
+  }
+
+  @Override
+  public long count() {
+    return byId.size();
+  }
+
+  @Override
+  public long count(String username) {
+    LongAdder count = countsByUser.get(username);
+    return count == null ? 0 : count.sum();
+  }
+
+  /**
+   * Returns the comments in {@code order} that come after {@code cursor}.
+   *
+   * @throws IllegalArgumentException if the cursor is not valid.
+   */
+  private NavigableSet<Comment> after(String order, String cursor) {
+    NavigableSet<Comment> ordered =
+        CommentQueries.OLDEST.equals(order) ? byTime : byTime.descendingSet();
+    if (cursor == null || cursor.equals("null")) {
+      return ordered;
+    }
+    int colon = cursor.indexOf(':');
+    if (colon < 0) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+    // Parse errors are IllegalArgumentExceptions too.
+    long timestamp = Long.parseLong(cursor.substring(0, colon));
+    long id = Long.parseLong(cursor.substring(colon + 1));
+    return ordered.tailSet(new Comment(id, null, timestamp, null, null), false);
+  }
+
+  private static String toCursor(Comment comment) {
+    return comment.getTimestamp() + ":" + comment.getId();
+  }
+}
@@ -0,0 +1,40 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Usernames kept in this instance's memory, and lost when it stops. */
+final class InMemoryUserRepository implements UserRepository {
+  private final Map<String, String> owners = new ConcurrentHashMap<>();
+  private final Map<String, String> usernames = new ConcurrentHashMap<>();
+
+  @Override
+  public String getUsername(String userId) {
+    return usernames.get(userId);
+  }
+
+  @Override
+  public boolean claimUsername(String username, String userId) {
+    String owner = owners.putIfAbsent(username, userId);
+    if (owner != null && !owner.equals(userId)) {
+      return false;
+    }
+    // Like the Datastore backend, a user's earlier name stays taken.
+    usernames.put(userId, username);
+    return true;
+  }
+}
@@ -0,0 +1,134 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token-bucket rate limiter with one bucket per key, such as a user ID or an IP address. A bucket
+ * holds up to {@code capacity} tokens and gains one every {@code refill}; each allowed action
+ * takes one.
+ *
+ * <p>A bucket is a single {@code AtomicLong}: the time at which it will be full again, from which
+ * the number of tokens follows. Taking a token is a compare-and-set on it, so checks never lock
+ * and only contend for the same key. Buckets that have filled up are no different from new ones,
+ * so they are dropped whenever more than {@code portfolio.rateLimit.keys} keys are tracked.
+ */
+public final class RateLimiter {
+  private static final int MAX_KEYS = Integer.getInteger("portfolio.rateLimit.keys", 100000);
+
+  private final long capacity;
+  private final long refillNanos;
+  private final Map<String, AtomicLong> fullAt = new ConcurrentHashMap<>();
+  private final AtomicBoolean sweeping = new AtomicBoolean();
+  private final LongAdder allowed = new LongAdder();
+  private final LongAdder limited = new LongAdder();
+
+  /**
+   * Creates a limiter that allows bursts of {@code capacity} actions per key, and one action every
+   * {@code refill} after that.
+   *
+   * @throws IllegalArgumentException if {@code capacity} or {@code refill} isn't positive.
+   */
+  public RateLimiter(int capacity, long refill, TimeUnit unit) {
+    if (capacity <= 0 || refill <= 0) {
+      throw new IllegalArgumentException("Capacity and refill must be positive.");
+    }
+    this.capacity = capacity;
+    this.refillNanos = unit.toNanos(refill);
+  }
+
+  /**
+   * Takes a token from the bucket for {@code key} and returns 0, or, if the bucket is empty,
+   * takes nothing and returns how many milliseconds until it has a token again.
+   */
+  public long acquire(String key) {
+    AtomicLong bucket = fullAt.get(key);
+    if (bucket == null) {
+      if (fullAt.size() >= MAX_KEYS) {
+        sweep();
+      }
+      bucket = fullAt.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+    }
+
+    long now = System.nanoTime();
+    // A bucket has a token unless it is more than capacity - 1 refills short of full.
+    long limit = now + (capacity - 1) * refillNanos;
+    while (true) {
+      long current = bucket.get();
+      // A bucket that filled up in the past is no fuller than one that fills up now.
+      long full = current - now < 0 ? now : current;
+      if (full - limit > 0) {
+        limited.increment();
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(full - limit));
+      }
+      if (bucket.compareAndSet(current, full + refillNanos)) {
+        allowed.increment();
+        return 0;
+      }
+    }
+  }
+
+  /**
+   * Gives back a token that {@link #acquire} took for {@code key}, for an action that didn't go
+   * ahead after all. Does nothing if the bucket has been dropped since, since there is no token to
+   * give back to, and the action stays counted as allowed.
+   */
+  public void release(String key) {
+    AtomicLong bucket = fullAt.get(key);
+    if (bucket != null) {
+      // acquire treats a bucket that filled up in the past as full, so this can't overfill it.
+      bucket.addAndGet(-refillNanos);
+      allowed.decrement();
+    }
+  }
+
+  /** Returns how many actions have been allowed. */
+  public long getAllowed() {
+    return allowed.sum();
+  }
+
+  /** Returns how many actions have been refused. */
+  public long getLimited() {
+    return limited.sum();
+  }
+
+  /** Returns how many keys have a bucket. */
+  int getKeyCount() {
+    return fullAt.size();
+  }
+
+  /** Drops the buckets that are full again, or every bucket if that isn't enough. */
+  private void sweep() {
+    if (!sweeping.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      long now = System.nanoTime();
+      fullAt.values().removeIf(bucket -> bucket.get() - now <= 0);
+      if (fullAt.size() >= MAX_KEYS) {
+        // Every key is active: forgetting some limits beats growing without bound.
+        fullAt.clear();
+      }
+    } finally {
+      sweeping.set(false);
+    }
+  }
+}
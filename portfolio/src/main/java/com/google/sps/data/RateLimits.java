@@ -0,0 +1,67 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How often users may post comments and claim usernames. Each action is limited both per user
+ * and per IP address, so that neither one account nor one machine with many accounts can flood
+ * Datastore with writes. IP limits are looser, since an address may be shared.
+ */
+public final class RateLimits {
+  private static final RateLimiter commentsPerUser = new RateLimiter(
+      Integer.getInteger("portfolio.rateLimit.commentBurst", 5), 10, TimeUnit.SECONDS);
+  private static final RateLimiter commentsPerAddress = new RateLimiter(
+      Integer.getInteger("portfolio.rateLimit.commentAddressBurst", 20), 1, TimeUnit.SECONDS);
+  private static final RateLimiter usernamesPerUser = new RateLimiter(5, 1, TimeUnit.MINUTES);
+  private static final RateLimiter usernamesPerAddress = new RateLimiter(20, 6, TimeUnit.SECONDS);
+
+  private RateLimits() {
+    // Disallow instances.
+  }
+
+  /**
+   * Returns 0 if the user with {@code userId} may post a comment from {@code address} now, and
+   * otherwise how many milliseconds they should wait.
+   */
+  public static long acquireComment(String userId, String address) {
+    return acquire(commentsPerUser, userId, commentsPerAddress, address);
+  }
+
+  /**
+   * Returns 0 if the user with {@code userId} may try to claim a username from {@code address}
+   * now, and otherwise how many milliseconds they should wait.
+   */
+  public static long acquireUsername(String userId, String address) {
+    return acquire(usernamesPerUser, userId, usernamesPerAddress, address);
+  }
+
+  private static long acquire(
+      RateLimiter perUser, String userId, RateLimiter perAddress, String address) {
+    // The address is checked first, so that a flood from one machine doesn't use up its users'
+    // own allowance. Its token is given back if the user is refused, so that one user's refused
+    // attempts don't use up the allowance of everyone sharing the address either.
+    long wait = perAddress.acquire(address);
+    if (wait > 0) {
+      return wait;
+    }
+    wait = perUser.acquire(userId);
+    if (wait > 0) {
+      perAddress.release(address);
+    }
+    return wait;
+  }
+}
@@ -0,0 +1,43 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * Picks the storage behind the servlets. {@code portfolio.storage=memory} keeps everything in
+ * this instance's memory, for load tests and running without App Engine; anything else, and the
+ * default, is Datastore.
+ */
+public final class Repositories {
+  private static final boolean IN_MEMORY = "memory".equals(System.getProperty("portfolio.storage"));
+
+  private static final CommentRepository comments =
+      IN_MEMORY ? new InMemoryCommentRepository() : new DatastoreCommentRepository();
+  private static final UserRepository users =
+      IN_MEMORY ? new InMemoryUserRepository() : new DatastoreUserRepository();
+
+  private Repositories() {
+    // Disallow instances.
+  }
+
+  /** Returns the comment repository shared by the servlets. */
+  public static CommentRepository comments() {
+    return comments;
+  }
+
+  /** Returns the user repository shared by the servlets. */
+  public static UserRepository users() {
+    return users;
+  }
+}
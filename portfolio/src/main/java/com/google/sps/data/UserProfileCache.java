@@ -0,0 +1,103 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.KeyFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory cache of the usernames users have chosen, so that the login status shown on every
+ * page load doesn't go to Datastore. Misses read the {@code UserInfo} entity directly by its key
+ * (the user id) rather than querying for it. Users without a username are cached too.
+ *
+ * <p>{@code ChooseUsernameServlet} updates this instance's cache when it stores a username; other
+ * instances see the change once their entry expires.
+ */
+public final class UserProfileCache {
+  private static final long TTL_NANOS =
+      TimeUnit.SECONDS.toNanos(Long.getLong("portfolio.userCache.ttlSeconds", 300));
+  private static final int MAX_USERS = Integer.getInteger("portfolio.userCache.users", 10000);
+
+  private static final UserProfileCache instance =
+      new UserProfileCache(DatastoreServiceFactory.getDatastoreService());
+
+  private final DatastoreService datastore;
+  private final Map<String, Entry> usernames = new ConcurrentHashMap<>();
+
+  UserProfileCache(DatastoreService datastore) {
+    this.datastore = datastore;
+  }
+
+  /** Returns the cache shared by the servlets. */
+  public static UserProfileCache getInstance() {
+    return instance;
+  }
+
+  /** Returns the username of the user with {@code id}, or null if they haven't chosen one. */
+  public String getUsername(String id) {
+    Entry entry = usernames.get(id);
+    if (entry != null && System.nanoTime() - entry.loadedAt < TTL_NANOS) {
+      return entry.username;
+    }
+
+    String username;
+    try {
+      Entity entity = datastore.get(KeyFactory.createKey("UserInfo", id));
+      username = (String) entity.getProperty("username");
+    } catch (EntityNotFoundException e) {
+      username = null;
+    }
+    // Only kept if the entry is still the one that missed. If setUsername ran during the read,
+    // what was read may be older than what it stored.
+    Entry loaded = new Entry(username, System.nanoTime());
+    makeRoom();
+    if (entry == null) {
+      usernames.putIfAbsent(id, loaded);
+    } else {
+      usernames.replace(id, entry, loaded);
+    }
+    return username;
+  }
+
+  /** Records that the user with {@code id} now has {@code username}. */
+  public void setUsername(String id, String username) {
+    makeRoom();
+    usernames.put(id, new Entry(username, System.nanoTime()));
+  }
+
+  private void makeRoom() {
+    if (usernames.size() >= MAX_USERS) {
+      // Rare enough, and cheap enough to refill, that dropping everything beats tracking use.
+      usernames.clear();
+    }
+  }
+
+  private static final class Entry {
+    // Null for users who haven't chosen a username.
+    final String username;
+    final long loadedAt;
+
+    Entry(String username, long loadedAt) {
+      this.username = username;
+      this.loadedAt = loadedAt;
+    }
+  }
+}
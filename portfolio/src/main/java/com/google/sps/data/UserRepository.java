@@ -0,0 +1,30 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * Where users' chosen usernames are stored. {@link Repositories#users()} returns the one the
+ * servlets use.
+ */
+public interface UserRepository {
+  /** Returns the username of the user with {@code userId}, or null if they haven't chosen one. */
+  String getUsername(String userId);
+
+  /**
+   * Gives {@code username} to the user with {@code userId}. Returns false if someone else already
+   * has it, or it couldn't be claimed right now.
+   */
+  boolean claimUsername(String username, String userId);
+}
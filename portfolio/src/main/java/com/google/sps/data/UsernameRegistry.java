@@ -0,0 +1,161 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.datastore.Transaction;
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out usernames, each to one user. A name is claimed by creating its {@code Username}
+ * entity in a transaction that touches nothing else, so claims for different names never contend
+ * with each other; the claimant's {@code UserInfo} is written afterwards, outside the transaction.
+ *
+ * <p>A Bloom filter of the names known to be taken, kept up to date by this instance's claims,
+ * turns most attempts at a popular name away without a transaction. Names the filter has never
+ * seen still go through the transaction, which is what actually guarantees uniqueness, since
+ * other instances may have claimed them since. The names already taken are loaded a batch per
+ * claim, so that no one claim pays for reading them all; until the last batch is in, every claim
+ * goes through the transaction.
+ */
+public final class UsernameRegistry {
+  private static final int EXPECTED_USERNAMES =
+      Integer.getInteger("portfolio.usernames.expected", 100000);
+  private static final double FALSE_POSITIVE_RATE = 0.01;
+
+  // Attempts at the claim transaction before giving up on a contended name.
+  private static final int CLAIM_ATTEMPTS = 3;
+
+  // Taken names read per claim until they have all been loaded.
+  static final int LOAD_BATCH = 1000;
+
+  private static final UsernameRegistry instance =
+      new UsernameRegistry(DatastoreServiceFactory.getDatastoreService());
+
+  private final DatastoreService datastore;
+  private final BloomFilter taken = new BloomFilter(EXPECTED_USERNAMES, FALSE_POSITIVE_RATE);
+
+  // Held by the claim loading the next batch; others carry on without the filter meanwhile.
+  private final Lock loading = new ReentrantLock();
+  // Guarded by loading. Where the next batch starts; null before the first.
+  private Cursor loadedUpTo;
+  private volatile boolean loaded;
+
+  UsernameRegistry(DatastoreService datastore) {
+    this.datastore = datastore;
+  }
+
+  /** Returns the registry shared by the servlets. */
+  public static UsernameRegistry getInstance() {
+    return instance;
+  }
+
+  /**
+   * Gives {@code username} to the user with {@code userId} and records it as theirs. Returns false
+   * if someone else already has it, or it stayed contended through every attempt.
+   */
+  public boolean claim(String username, String userId) {
+    Key key = KeyFactory.createKey("Username", username);
+    if (namesLoaded() && taken.mightContain(username) && isTakenByOther(key, userId)) {
+      return false;
+    }
+
+    for (int attempt = 0; attempt < CLAIM_ATTEMPTS; attempt++) {
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        if (isTakenByOther(transaction, key, userId)) {
+          taken.add(username);
+          return false;
+        }
+        Entity usernameEntity = new Entity(key);
+        usernameEntity.setProperty("owner", userId);
+        datastore.put(transaction, usernameEntity);
+        transaction.commit();
+        break;
+      } catch (ConcurrentModificationException e) {
+        // Someone else claimed it at the same moment; the next attempt will see who.
+        if (attempt == CLAIM_ATTEMPTS - 1) {
+          return false;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+    taken.add(username);
+
+    // Make a UserInfo Entity with retrieved ID and username. The put() function automatically
+    // inserts new data or updates existing data based on ID
+    Entity userInfo = new Entity("UserInfo", userId);
+    userInfo.setProperty("id", userId);
+    userInfo.setProperty("username", username);
+    datastore.put(userInfo);
+    return true;
+  }
+
+  private boolean isTakenByOther(Key key, String userId) {
+    return isTakenByOther(null, key, userId);
+  }
+
+  private boolean isTakenByOther(Transaction transaction, Key key, String userId) {
+    try {
+      Entity existing = transaction == null ? datastore.get(key) : datastore.get(transaction, key);
+      // Names claimed before owners were recorded belong to somebody else.
+      return !userId.equals(existing.getProperty("owner"));
+    } catch (EntityNotFoundException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns whether every name taken before this registry started is in the filter. Until they
+   * are, loads the next batch of them, unless another claim already is.
+   */
+  boolean namesLoaded() {
+    if (loaded || !loading.tryLock()) {
+      return loaded;
+    }
+    try {
+      if (!loaded) {
+        FetchOptions options = FetchOptions.Builder.withLimit(LOAD_BATCH);
+        if (loadedUpTo != null) {
+          options.startCursor(loadedUpTo);
+        }
+        QueryResultList<Entity> names = datastore.prepare(new Query("Username").setKeysOnly())
+            .asQueryResultList(options);
+        for (Entity entity : names) {
+          taken.add(entity.getKey().getName());
+        }
+        loadedUpTo = names.getCursor();
+        loaded = names.size() < LOAD_BATCH;
+      }
+      return loaded;
+    } finally {
+      loading.unlock();
+    }
+  }
+}
@@ -14,18 +14,10 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.EntityNotFoundException;
-import com.google.appengine.api.datastore.Key;
-import com.google.appengine.api.datastore.KeyFactory;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Transaction;
-import com.google.appengine.api.datastore.TransactionOptions;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
+import com.google.sps.data.RateLimits;
+import com.google.sps.data.Repositories;
 import java.io.IOException;
 import java.io.PrintWriter;
 import javax.servlet.annotation.WebServlet;
@@ -47,40 +39,22 @@ public class ChooseUsernameServlet extends HttpServlet {
     String username = request.getParameter("username");
     String id = userService.getCurrentUser().getUserId();
 
-    // Build transaction with cross-group functionality
-    // so it can put both a Username and UserInfo entity
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    TransactionOptions options = TransactionOptions.Builder.withXG(true);
-    Transaction transaction = datastore.beginTransaction(options);
-    try {
-      Entity check = null;
-      try {
-        Key usrkey = KeyFactory.createKey("Username", username);
-        check = datastore.get(usrkey);
-      } catch (EntityNotFoundException e) {
-        // This is what we want (the entity was not found, free to use the username)
-      }
+    // Stop bots from trying name after name
+    long wait = RateLimits.acquireUsername(id, request.getRemoteAddr());
+    if (wait > 0) {
+      response.setHeader("Retry-After", Long.toString((wait + 999) / 1000));
+      response.setStatus(429, "Too many username attempts.");
+      return;
+    }
 
-      if (check != null) {
-        // An entity was found with the requested username
-        response.setStatus(409, "Username already exists.");
-        return;
-      } else {
-        Entity usr = new Entity("Username", username);
-        datastore.put(transaction, usr);
-        // Make a UserInfo Entity with retrieved ID and username
-        Entity entity = new Entity("UserInfo", id);
-        entity.setProperty("id", id);
-        entity.setProperty("username", username);
-        // The put() function automatically inserts new data or updates existing data based on ID
-        datastore.put(transaction, entity);
-        transaction.commit();
-      }
-    } finally {
-      if (transaction.isActive()) {
-        transaction.rollback();
-      }
+    // Claim the username; only the Username entity is in the transaction, so signups for
+    // different names don't contend
+    if (!Repositories.users().claimUsername(username, id)) {
+      // Someone else already has the requested username
+      response.setStatus(409, "Username already exists.");
+      return;
     }
+
     response.sendRedirect("/index.html");
     return;
   }
@@ -0,0 +1,66 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.gson.JsonObject;
+import com.google.sps.data.CommentPageCache;
+import com.google.sps.data.CommentRepository;
+import com.google.sps.data.Repositories;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that returns the number of comments, and the number posted under each {@code username}
+ * asked for, without scanning comments (from the sharded counters on Datastore). Admins can POST
+ * to recount the comments from scratch first.
+ */
+@WebServlet("/comment-stats")
+public class CommentStatsServlet extends HttpServlet {
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    CommentRepository comments = Repositories.comments();
+    JsonObject json = new JsonObject();
+    json.addProperty("total", comments.count());
+
+    JsonObject users = new JsonObject();
+    String[] usernames = request.getParameterValues("username");
+    if (usernames != null) {
+      for (String username : usernames) {
+        users.addProperty(username, comments.count(username));
+      }
+    }
+    json.add("users", users);
+    json.addProperty("pageCacheHitRate", CommentPageCache.getInstance().getHitRate());
+
+    response.setContentType("application/json");
+    response.getWriter().println(json);
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    UserService userService = UserServiceFactory.getUserService();
+    if (!userService.isUserLoggedIn() || !userService.isUserAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN, "Only admins can recount comments.");
+      return;
+    }
+    Repositories.comments().recount();
+    doGet(request, response);
+  }
+}
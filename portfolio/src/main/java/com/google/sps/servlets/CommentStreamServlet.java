@@ -0,0 +1,77 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.utils.SystemProperty;
+import com.google.sps.data.CommentBroadcaster;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.AsyncContext;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that keeps the connection open and streams new comments to the page as server-sent
+ * events, through the {@link CommentBroadcaster}. The request thread is released straight away.
+ * Streams end after {@code portfolio.commentStream.timeoutSeconds}, and browsers reconnect on
+ * their own, sending the ID of the last event they got so that nothing in between is missed.
+ *
+ * <p>On App Engine, whose Java 8 runtime only sends a response once it is complete, each stream
+ * ends as soon as it has delivered an event, so that comments aren't held back until the timeout.
+ * There the stream is really long polling, with one request per event, and each waiting page
+ * holds a request open; that is why the app is threadsafe. {@code
+ * portfolio.commentStream.eventPerResponse} overrides that choice.
+ */
+@WebServlet(urlPatterns = "/comments/stream", asyncSupported = true)
+public class CommentStreamServlet extends HttpServlet {
+  // Under App Engine's 60 second request deadline.
+  private static final long TIMEOUT_MILLIS =
+      TimeUnit.SECONDS.toMillis(Long.getLong("portfolio.commentStream.timeoutSeconds", 50));
+
+  private static final boolean ON_APP_ENGINE =
+      SystemProperty.environment.value() == SystemProperty.Environment.Value.Production;
+  private static final boolean EVENT_PER_RESPONSE = Boolean.parseBoolean(System.getProperty(
+      "portfolio.commentStream.eventPerResponse", String.valueOf(ON_APP_ENGINE)));
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    // Tell the browser to wait a little before reconnecting once the stream ends.
+    response.getOutputStream().write("retry: 1000\n\n".getBytes(StandardCharsets.UTF_8));
+    response.flushBuffer();
+
+    AsyncContext client = request.startAsync();
+    client.setTimeout(TIMEOUT_MILLIS);
+    CommentBroadcaster.getInstance().subscribe(
+        client, lastEventId(request.getHeader("Last-Event-ID")), EVENT_PER_RESPONSE);
+  }
+
+  /** Returns the ID a reconnecting browser last got, or -1 for a new stream. */
+  private static long lastEventId(String header) {
+    if (header == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(header.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -14,12 +14,11 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
 import com.google.gson.Gson;
+import com.google.sps.data.RateLimits;
+import com.google.sps.data.Repositories;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -54,16 +53,19 @@ public class DataServlet extends HttpServlet {
       return;
     }
 
-    // Create entity and load with data
-    Entity commentEntity = new Entity("Comment");
-    commentEntity.setProperty("text", comment);
-    commentEntity.setProperty("timestamp", timestamp);
-    commentEntity.setProperty("email", email);
-    commentEntity.setProperty("username", username);
+    // Turn away users, and machines, posting faster than a person would
+    long wait = RateLimits.acquireComment(
+        userService.getCurrentUser().getUserId(), request.getRemoteAddr());
+    if (wait > 0) {
+      response.setHeader("Retry-After", Long.toString((wait + 999) / 1000));
+      response.sendError(429, "You are posting comments too quickly.");
+      return;
+    }
 
-    // Put entity into Datastore
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    datastore.put(commentEntity);
+    // Queue the comment to be stored with others posted around the same time, and let the
+    // client know its ID without waiting for Datastore
+    long id = Repositories.comments().add(comment, timestamp, email, username);
+    response.setHeader("X-Comment-Id", Long.toString(id));
 
     // Redirect back to the HTML page.
     response.sendRedirect("/index.html");
@@ -14,28 +14,25 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.Cursor;
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.FetchOptions;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.SortDirection;
-import com.google.appengine.api.datastore.QueryResultList;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
-import com.google.sps.data.Comment;
+import com.google.sps.data.CommentPage;
+import com.google.sps.data.CommentPageCache;
+import com.google.sps.data.CommentQueries;
+import com.google.sps.data.Repositories;
 import java.io.IOException;
 import java.lang.Integer;
-import java.util.ArrayList;
-import java.util.List;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet responsible for getting comments from Datastore. */
+/**
+ * Servlet responsible for getting comments from the comment repository. With {@code fields=cursor}
+ * only the cursor of the next page is returned, which costs a keys-only query on Datastore.
+ *
+ * <p>Whenever a full page is sent, the page after it is read in the background and cached under
+ * the cursor the client was just given.
+ */
 @WebServlet("/get-comments")
 public class GetCommentsServlet extends HttpServlet {
   @Override
@@ -45,58 +42,71 @@ public class GetCommentsServlet extends HttpServlet {
     String pageCursor = request.getParameter("pageCursor");
     int pageSize = Integer.parseInt(request.getParameter("num"));
 
-    // Limit comment number and set cursor
-    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(pageSize);
-    if (!pageCursor.equals("null")) {
-      fetchOptions.startCursor(Cursor.fromWebSafeString(pageCursor));
+    String order = CommentQueries.OLDEST.equals(commentOrderString) ? CommentQueries.OLDEST
+                                                                     : CommentQueries.NEWEST;
+
+    // Callers that only want to move the pager along get the next cursor, from a keys-only query
+    if ("cursor".equals(request.getParameter("fields"))) {
+      sendNextCursor(response, order, pageSize, pageCursor);
+      return;
+    }
+
+    // Serve the page from the cache if it has been read recently
+    CommentPageCache cache = CommentPageCache.getInstance();
+    CommentPage page = cache.get(order, pageSize, pageCursor);
+    response.setHeader("X-Comment-Cache", page == null ? "miss" : "hit");
+    if (page == null) {
+      long generation = cache.generation();
+      page = readPage(order, pageSize, pageCursor);
+      if (page == null) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor");
+        return;
+      }
+      cache.put(order, pageSize, pageCursor, page, generation);
     }
 
-    // Make query with correct comment order
-    Query query;
-    if (commentOrderString.equals("oldest")) {
-      query = new Query("Comment").addSort("timestamp", SortDirection.ASCENDING);
-    } else {
-      query = new Query("Comment").addSort("timestamp", SortDirection.DESCENDING);
+    // Start reading the next page while this one is sent, so that "next" is served from memory
+    if (page.getComments().size() == pageSize
+        && !cache.contains(order, pageSize, page.getNextPageCursor())) {
+      prefetch(cache, order, pageSize, page.getNextPageCursor());
     }
 
-    // Query datastore
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery prepQuery = datastore.prepare(query);
-    QueryResultList<Entity> entities;
+    // Send the page, rendered once as JSON and reused while it is cached
+    byte[] json = page.toJson();
+    response.setContentType("application/json");
+    response.setCharacterEncoding("UTF-8");
+    response.setContentLength(json.length);
+    response.getOutputStream().write(json);
+  }
+
+  private void sendNextCursor(HttpServletResponse response, String order, int pageSize,
+      String pageCursor) throws IOException {
+    String nextPageCursor;
     try {
-      entities = prepQuery.asQueryResultList(fetchOptions);
+      nextPageCursor = Repositories.comments().nextCursor(order, pageSize, pageCursor);
     } catch (IllegalArgumentException e) {
-      System.out.println("Invalid cursor");
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor");
       return;
     }
+    JsonObject json = new JsonObject();
+    json.addProperty("nextPageCursor", nextPageCursor);
+    response.setContentType("application/json");
+    response.getWriter().println(json);
+  }
 
-    // Loop through Entities and add them to comments List
-    List<Comment> comments = new ArrayList<>();
-    for (Entity entity : entities) {
-      long id = entity.getKey().getId();
-      String text = (String) entity.getProperty("text");
-      long timestamp = (long) entity.getProperty("timestamp");
-      String username = (String) entity.getProperty("username");
-      String email = (String) entity.getProperty("email");
+  /** Caches the page at {@code pageCursor} as pending, while the repository reads it. */
+  private void prefetch(CommentPageCache cache, String order, int pageSize, String pageCursor) {
+    long generation = cache.generation();
+    cache.putPending(order, pageSize, pageCursor,
+        Repositories.comments().readPageAsync(order, pageSize, pageCursor), generation);
+  }
 
-      // Comment object to hold all info
-      Comment comment = new Comment(id, text, timestamp, username, email);
-      comments.add(comment);
+  /** Reads a page of comments from storage, or returns null if the cursor is invalid. */
+  private CommentPage readPage(String order, int pageSize, String pageCursor) {
+    try {
+      return Repositories.comments().readPage(order, pageSize, pageCursor);
+    } catch (IllegalArgumentException e) {
+      return null;
     }
-    String nextPageCursor = entities.getCursor().toWebSafeString();
-
-    // Format comments List to JSON for return
-    Gson gson = new Gson();
-    String json = gson.toJson(comments);
-
-    // Send the JSON as the response
-    response.setContentType("application/json;");
-
-    // Build JsonObject with comments list and nextPageCursor
-    JsonObject ret = new JsonObject();
-    ret.addProperty("comments", json);
-    ret.addProperty("nextPageCursor", nextPageCursor);
-
-    response.getWriter().println(ret);
   }
 }
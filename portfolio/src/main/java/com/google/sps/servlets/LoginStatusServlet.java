@@ -14,11 +14,11 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.*;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.sps.data.Repositories;
 import java.io.IOException;
 import java.io.PrintWriter;
 import javax.servlet.annotation.WebServlet;
@@ -57,15 +57,7 @@ public class LoginStatusServlet extends HttpServlet {
 
   /** Returns the nickname of the user with id, or null if the user has not set a nickname. */
   private String getUserUsername(String id) {
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query = new Query("UserInfo")
-                      .setFilter(new Query.FilterPredicate("id", Query.FilterOperator.EQUAL, id));
-    PreparedQuery results = datastore.prepare(query);
-    Entity entity = results.asSingleEntity();
-    if (entity == null) {
-      return null;
-    }
-    String username = (String) entity.getProperty("username");
-    return username;
+    // Usually answered from memory; otherwise read by key, without a query
+    return Repositories.users().getUsername(id);
   }
 }
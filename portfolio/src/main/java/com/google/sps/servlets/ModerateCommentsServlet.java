@@ -0,0 +1,120 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.gson.JsonObject;
+import com.google.sps.data.CommentRepository;
+import com.google.sps.data.Repositories;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Deletes many comments at once, for cleaning up after spam. Only admins may use it. The comments
+ * are chosen either by {@code id} (repeated) or by any of {@code username}, {@code email}, and a
+ * {@code from}/{@code to} range of timestamps in milliseconds, which must all match.
+ *
+ * <p>Matching IDs are streamed from the repository (a keys-only query on Datastore) and deleted in
+ * batches. The response has one JSON line per batch with the running total, and a last line with
+ * the throughput.
+ */
+@WebServlet("/moderate-comments")
+public class ModerateCommentsServlet extends HttpServlet {
+  // Datastore deletes at most 500 keys per call.
+  private static final int BATCH_SIZE = 500;
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    UserService userService = UserServiceFactory.getUserService();
+    if (!userService.isUserLoggedIn() || !userService.isUserAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN, "Only admins can moderate comments.");
+      return;
+    }
+
+    CommentRepository comments = Repositories.comments();
+    Iterable<Long> ids;
+    try {
+      ids = matchingIds(comments, request);
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+
+    response.setContentType("application/x-ndjson");
+    PrintWriter out = response.getWriter();
+    long start = System.nanoTime();
+    long deleted = 0;
+    List<Long> batch = new ArrayList<>(BATCH_SIZE);
+    for (long id : ids) {
+      batch.add(id);
+      if (batch.size() == BATCH_SIZE) {
+        deleted += comments.delete(batch).size();
+        batch.clear();
+        out.println(progress(deleted, start));
+        out.flush();
+      }
+    }
+    if (!batch.isEmpty()) {
+      deleted += comments.delete(batch).size();
+    }
+
+    JsonObject summary = progress(deleted, start);
+    double seconds = (System.nanoTime() - start) / 1e9;
+    summary.addProperty("commentsPerSecond", seconds > 0 ? Math.round(deleted / seconds) : 0);
+    summary.addProperty("done", true);
+    out.println(summary);
+  }
+
+  /**
+   * Returns the IDs of the comments the request asks for.
+   *
+   * @throws IllegalArgumentException if the request doesn't narrow the comments down at all, or a
+   *     number in it can't be read.
+   */
+  private Iterable<Long> matchingIds(CommentRepository comments, HttpServletRequest request) {
+    String[] ids = request.getParameterValues("id");
+    if (ids != null) {
+      List<Long> parsed = new ArrayList<>();
+      for (String id : ids) {
+        parsed.add(Long.parseLong(id));
+      }
+      return parsed;
+    }
+
+    String username = request.getParameter("username");
+    String email = request.getParameter("email");
+    String from = request.getParameter("from");
+    String to = request.getParameter("to");
+    if (username == null && email == null && from == null && to == null) {
+      throw new IllegalArgumentException("Give ids or at least one filter.");
+    }
+    return comments.findIds(username, email, from == null ? null : Long.parseLong(from),
+        to == null ? null : Long.parseLong(to));
+  }
+
+  private static JsonObject progress(long deleted, long start) {
+    JsonObject json = new JsonObject();
+    json.addProperty("deleted", deleted);
+    json.addProperty("elapsedMillis", (System.nanoTime() - start) / 1000000);
+    return json;
+  }
+}
@@ -0,0 +1,57 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.data.CommentPage;
+import com.google.sps.data.CommentSearchIndex;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that searches comments for the words in {@code q}, newest first. Pages look like the
+ * ones from {@code /get-comments}; the cursor of the next page is passed back as {@code
+ * pageCursor}.
+ */
+@WebServlet("/search-comments")
+public class SearchCommentsServlet extends HttpServlet {
+  private static final int DEFAULT_PAGE_SIZE = 10;
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String query = request.getParameter("q");
+    String pageCursor = request.getParameter("pageCursor");
+    String num = request.getParameter("num");
+
+    CommentPage page;
+    try {
+      int offset =
+          pageCursor == null || pageCursor.equals("null") ? 0 : Integer.parseInt(pageCursor);
+      int pageSize = num == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(num);
+      page = CommentSearchIndex.getInstance().search(query, offset, pageSize);
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor or page size");
+      return;
+    }
+
+    byte[] json = page.toJson();
+    response.setContentType("application/json");
+    response.setCharacterEncoding("UTF-8");
+    response.setContentLength(json.length);
+    response.getOutputStream().write(json);
+  }
+}
@@ -141,10 +141,9 @@ async function getComments() {
     }
     pageCursor = cursorList[pageNum];
 
-    // Retrieve and parse comments JSON from get-comments response
-    let comments = resp.comments;
-    comments = JSON.parse(comments);
-    if (comments.length === 0 || comments === '') {
+    // The comments come as an array in the get-comments response
+    const comments = resp.comments;
+    if (comments.length === 0) {
       // At the end: no more comments
       pageNum = pageNum - 1;
       return;
@@ -232,6 +231,10 @@ async function submitComment() {
   const responsePath =
       '/data?email=' + email + '&text=' + comment + '&username=' + username;
   const response = await fetch(responsePath);
+  if (response.status === 429) {
+    alert('You are posting comments too quickly, please wait a moment.');
+    return;
+  }
 
   // Reset page back to beginning
   cursorList = [null];
@@ -256,6 +259,37 @@ async function deleteComment(comment) {
   getComments();
 }
 
+/**
+ * Listen for comments posted by anyone while the page
+ * is open, and show them at the top of the first page
+ * of newest comments.
+ */
+function listenForComments() {
+  if (typeof EventSource === 'undefined') {
+    return;
+  }
+  const stream = new EventSource('/comments/stream');
+  stream.addEventListener('comments', (event) => {
+    const commentArea = document.getElementById('comment-space');
+    if (commentArea === null || pageNum !== 0 || order !== 'newest') {
+      return;
+    }
+    // Comments come oldest first, so the newest ends up on top
+    const comments = JSON.parse(event.data).comments;
+    for (let i = 0; i < comments.length; i++) {
+      const selector = '[data-id="' + comments[i].id + '"]';
+      if (commentArea.querySelector(selector) === null) {
+        const commentElement = createCommentElement(comments[i]);
+        commentArea.insertBefore(commentElement, commentArea.firstChild);
+      }
+    }
+    // Keep the page at the chosen number of comments
+    while (commentArea.children.length > numComments) {
+      commentArea.removeChild(commentArea.lastChild);
+    }
+  });
+}
+
 /**
  * Convert a Javascript Date to the AM/PM
  * format desired.
@@ -297,6 +331,7 @@ function createCommentElement(comment) {
   // Article tag to encapsulate comment elements
   const commentElement = document.createElement('article');
   commentElement.className = 'comment';
+  commentElement.dataset.id = comment.id;
 
   // Bold tag for the username
   const username = document.createElement('b');
@@ -352,6 +387,10 @@ async function sendUsername() {
       // Conflict error: username already taken
       document.getElementById('errorMessage').innerText =
           'That username is taken, please try another.';
+    } else if (response.status === 429) {
+      // Too many attempts in a short time
+      document.getElementById('errorMessage').innerText =
+          'Too many attempts, please wait a minute and try again.';
     } else {
       // User tried to set a username using a link without being logged in
       // Send them back to home screen
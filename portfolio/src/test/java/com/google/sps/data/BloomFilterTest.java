@@ -0,0 +1,98 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class BloomFilterTest {
+  private static final int ELEMENTS = 100000;
+
+  @Test
+  public void noFalseNegatives() {
+    BloomFilter filter = new BloomFilter(ELEMENTS, 0.01);
+    for (int i = 0; i < ELEMENTS; i++) {
+      filter.add("user" + i);
+    }
+    for (int i = 0; i < ELEMENTS; i++) {
+      Assert.assertTrue(filter.mightContain("user" + i));
+    }
+  }
+
+  @Test
+  public void falsePositiveRateIsAboutAsSized() {
+    for (double rate : new double[] {0.1, 0.01, 0.001}) {
+      BloomFilter filter = new BloomFilter(ELEMENTS, rate);
+      for (int i = 0; i < ELEMENTS; i++) {
+        filter.add("user" + i);
+      }
+      int falsePositives = 0;
+      for (int i = 0; i < ELEMENTS; i++) {
+        if (filter.mightContain("other" + i)) {
+          falsePositives++;
+        }
+      }
+      double measured = (double) falsePositives / ELEMENTS;
+      Assert.assertTrue(rate + " sized, " + measured + " measured", measured < rate * 1.5);
+    }
+  }
+
+  @Test
+  public void emptyFilterContainsNothing() {
+    BloomFilter filter = new BloomFilter(ELEMENTS, 0.01);
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertFalse(filter.mightContain("user" + i));
+    }
+  }
+
+  @Test
+  public void concurrentAddsAreAllKept() throws InterruptedException {
+    BloomFilter filter = new BloomFilter(ELEMENTS, 0.01);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      int first = t;
+      threads.add(new Thread(() -> {
+        for (int i = first; i < ELEMENTS; i += 8) {
+          filter.add("user" + i);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (int i = 0; i < ELEMENTS; i++) {
+      Assert.assertTrue(filter.mightContain("user" + i));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsRateOfOne() {
+    new BloomFilter(ELEMENTS, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNoElements() {
+    new BloomFilter(0, 0.01);
+  }
+}
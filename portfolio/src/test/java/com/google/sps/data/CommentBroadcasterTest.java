@@ -0,0 +1,203 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CommentBroadcasterTest {
+  // Written synchronously, as where background threads aren't allowed.
+  private final CommentBroadcaster broadcaster = new CommentBroadcaster(null);
+
+  @Test
+  public void sendsEventsWithIds() throws Exception {
+    FakeClient client = new FakeClient();
+    broadcaster.subscribe(client.context, -1, false);
+
+    broadcaster.publish(comment(1));
+    broadcaster.publish(comment(2));
+
+    String written = client.written();
+    Assert.assertTrue(written, written.startsWith("id: 1\nevent: comments\ndata: {"));
+    Assert.assertTrue(written, written.contains("\n\nid: 2\nevent: comments\n"));
+    Assert.assertFalse(client.completed);
+  }
+
+  @Test
+  public void replaysEventsAfterLastEventId() throws Exception {
+    broadcaster.publish(comment(1));
+    broadcaster.publish(comment(2));
+    broadcaster.publish(comment(3));
+
+    FakeClient client = new FakeClient();
+    broadcaster.subscribe(client.context, 1, false);
+
+    String written = client.written();
+    Assert.assertFalse(written, written.contains("id: 1\n"));
+    Assert.assertTrue(written, written.startsWith("id: 2\n"));
+    Assert.assertTrue(written, written.contains("id: 3\n"));
+  }
+
+  @Test
+  public void slowClientIsDisconnectedWithoutHoldingUpOthers() throws Exception {
+    FakeClient slow = new FakeClient();
+    FakeClient fast = new FakeClient();
+    broadcaster.subscribe(slow.context, -1, false);
+    broadcaster.subscribe(fast.context, -1, false);
+    slow.out.ready = false;
+
+    for (int i = 0; i < 100; i++) {
+      broadcaster.publish(comment(i));
+    }
+
+    Assert.assertTrue(slow.completed);
+    Assert.assertFalse(fast.completed);
+    Assert.assertTrue(fast.written().contains("id: 100\n"));
+    Assert.assertEquals(1, broadcaster.getClientCount());
+  }
+
+  @Test
+  public void backlogIsWrittenOnceTheConnectionIsReady() throws Exception {
+    FakeClient client = new FakeClient();
+    broadcaster.subscribe(client.context, -1, false);
+    client.out.ready = false;
+    broadcaster.publish(comment(1));
+    Assert.assertEquals("", client.written());
+
+    client.out.ready = true;
+    client.out.listener.onWritePossible();
+
+    Assert.assertTrue(client.written().startsWith("id: 1\n"));
+  }
+
+  @Test
+  public void oneEventClientIsDisconnectedAfterItsEvent() throws Exception {
+    FakeClient client = new FakeClient();
+    broadcaster.subscribe(client.context, -1, true);
+    Assert.assertFalse(client.completed);
+
+    broadcaster.publish(comment(1));
+
+    Assert.assertTrue(client.written().startsWith("id: 1\n"));
+    Assert.assertTrue(client.completed);
+    Assert.assertEquals(0, broadcaster.getClientCount());
+  }
+
+  @Test
+  public void concurrentPublishersDeliverEveryEventInOrder() throws Exception {
+    FakeClient client = new FakeClient();
+    broadcaster.subscribe(client.context, -1, false);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> publishers = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      publishers.add(new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int j = 0; j < 100; j++) {
+          broadcaster.publish(comment(j));
+        }
+      }));
+    }
+    for (Thread publisher : publishers) {
+      publisher.start();
+    }
+    start.countDown();
+    for (Thread publisher : publishers) {
+      publisher.join();
+    }
+
+    Matcher ids = Pattern.compile("id: (\\d+)\n").matcher(client.written());
+    for (long expected = 1; expected <= 800; expected++) {
+      Assert.assertTrue("Missing event " + expected, ids.find());
+      Assert.assertEquals(expected, Long.parseLong(ids.group(1)));
+    }
+    Assert.assertFalse(ids.find());
+  }
+
+  private static List<Comment> comment(long id) {
+    return Collections.singletonList(
+        new Comment(id, "Comment " + id, id, "user", "user@example.com"));
+  }
+
+  /** A streaming client whose connection can be made to stop taking writes. */
+  private static final class FakeClient {
+    final FakeOutputStream out = new FakeOutputStream();
+    final AsyncContext context;
+    boolean completed;
+
+    FakeClient() {
+      ServletResponse response = (ServletResponse) Proxy.newProxyInstance(
+          ServletResponse.class.getClassLoader(), new Class<?>[] {ServletResponse.class},
+          (proxy, method, args) -> method.getName().equals("getOutputStream") ? out : null);
+      context = (AsyncContext) Proxy.newProxyInstance(AsyncContext.class.getClassLoader(),
+          new Class<?>[] {AsyncContext.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+              case "getResponse":
+                return response;
+              case "complete":
+                completed = true;
+                return null;
+              default:
+                return null;
+            }
+          });
+    }
+
+    String written() {
+      return new String(out.bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static final class FakeOutputStream extends ServletOutputStream {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    boolean ready = true;
+    WriteListener listener;
+
+    @Override
+    public boolean isReady() {
+      return ready;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener listener) {
+      this.listener = listener;
+    }
+
+    @Override
+    public void write(int b) {
+      bytes.write(b);
+    }
+  }
+}
@@ -0,0 +1,131 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CommentCounterTest {
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+  private DatastoreService datastore;
+  private CommentCounter counter;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+    counter = new CommentCounter(datastore);
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void updatesChangeUserCountsAndTotal() {
+    Map<String, Long> added = new HashMap<>();
+    added.put("alice", 3L);
+    added.put("bob", 1L);
+    counter.update(added);
+    counter.update(Collections.singletonMap("alice", -1L));
+
+    Assert.assertEquals(3, counter.getTotal());
+    Assert.assertEquals(2, counter.getCount("alice"));
+    Assert.assertEquals(1, counter.getCount("bob"));
+    Assert.assertEquals(0, counter.getCount("nobody"));
+  }
+
+  @Test
+  public void shardsAddUpToTheCount() {
+    for (int i = 0; i < 50; i++) {
+      counter.update(Collections.singletonMap("alice", 1L));
+    }
+
+    // A counter with nothing cached reads every shard.
+    CommentCounter reader = new CommentCounter(datastore);
+    Assert.assertEquals(50, reader.getTotal());
+    Assert.assertEquals(50, reader.getCount("alice"));
+    Assert.assertTrue(shards() > 2);
+  }
+
+  @Test
+  public void zeroChangesWriteNothing() {
+    counter.update(Collections.singletonMap("alice", 0L));
+
+    Assert.assertEquals(0, shards());
+  }
+
+  @Test
+  public void cachedCountsSeeOnlyTheirOwnChanges() {
+    Assert.assertEquals(0, counter.getTotal());
+    CommentCounter other = new CommentCounter(datastore);
+
+    counter.update(Collections.singletonMap("alice", 2L));
+    other.update(Collections.singletonMap("bob", 1L));
+
+    // The other counter's change shows up once the cached total expires.
+    Assert.assertEquals(2, counter.getTotal());
+    Assert.assertEquals(3, new CommentCounter(datastore).getTotal());
+  }
+
+  @Test
+  public void recountReplacesDriftedCounts() {
+    storeComment("alice");
+    storeComment("alice");
+    storeComment("bob");
+    counter.update(Collections.singletonMap("alice", 10L));
+    counter.update(Collections.singletonMap("carol", 1L));
+
+    counter.recount();
+
+    Assert.assertEquals(3, counter.getTotal());
+    Assert.assertEquals(2, counter.getCount("alice"));
+    Assert.assertEquals(1, counter.getCount("bob"));
+    Assert.assertEquals(0, counter.getCount("carol"));
+    Assert.assertEquals(3, new CommentCounter(datastore).getTotal());
+  }
+
+  private void storeComment(String username) {
+    Entity comment = new Entity("Comment");
+    comment.setProperty("text", "Comment");
+    comment.setProperty("timestamp", 1L);
+    comment.setProperty("email", username + "@example.com");
+    comment.setProperty("username", username);
+    datastore.put(comment);
+  }
+
+  private int shards() {
+    return datastore.prepare(new Query("CommentCount"))
+        .countEntities(FetchOptions.Builder.withDefaults());
+  }
+}
@@ -0,0 +1,116 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CommentPageCacheTest {
+  private static final int PAGE_SIZE = 2;
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+  private final CommentPageCache cache = CommentPageCache.getInstance();
+  private DatastoreService datastore;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+    for (int i = 0; i < 5; i++) {
+      Entity comment = new Entity("Comment");
+      comment.setProperty("text", "Comment " + i);
+      comment.setProperty("timestamp", 1000L + i);
+      comment.setProperty("email", "user" + i + "@example.com");
+      comment.setProperty("username", "user" + i);
+      datastore.put(comment);
+    }
+    cache.invalidateAll();
+  }
+
+  @After
+  public void tearDown() {
+    cache.invalidateAll();
+    helper.tearDown();
+  }
+
+  @Test
+  public void firstPageHasNoCursor() {
+    long generation = cache.generation();
+    CommentPage page =
+        CommentQueries.readPage(datastore, CommentQueries.NEWEST, PAGE_SIZE, null);
+    cache.put(CommentQueries.NEWEST, PAGE_SIZE, null, page, generation);
+
+    long hits = cache.getHits();
+    Assert.assertSame(page, cache.get(CommentQueries.NEWEST, PAGE_SIZE, null));
+    Assert.assertEquals(hits + 1, cache.getHits());
+    Assert.assertNull(cache.get(CommentQueries.OLDEST, PAGE_SIZE, null));
+    Assert.assertNull(cache.get(CommentQueries.NEWEST, PAGE_SIZE, page.getNextPageCursor()));
+  }
+
+  @Test
+  public void pendingPageIsReadOnce() {
+    CommentPage first =
+        CommentQueries.readPage(datastore, CommentQueries.NEWEST, PAGE_SIZE, null);
+    String cursor = first.getNextPageCursor();
+    long generation = cache.generation();
+    cache.putPending(CommentQueries.NEWEST, PAGE_SIZE, cursor,
+        CommentQueries.readPageAsync(DatastoreServiceFactory.getAsyncDatastoreService(),
+            CommentQueries.NEWEST, PAGE_SIZE, cursor),
+        generation);
+
+    Assert.assertTrue(cache.contains(CommentQueries.NEWEST, PAGE_SIZE, cursor));
+    CommentPage second = cache.get(CommentQueries.NEWEST, PAGE_SIZE, cursor);
+    Assert.assertEquals(PAGE_SIZE, second.getComments().size());
+    Assert.assertEquals("Comment 2", second.getComments().get(0).getText());
+    Assert.assertSame(second, cache.get(CommentQueries.NEWEST, PAGE_SIZE, cursor));
+  }
+
+  @Test
+  public void pageReadBeforeAWriteIsNotCached() {
+    long generation = cache.generation();
+    CommentPage page =
+        CommentQueries.readPage(datastore, CommentQueries.NEWEST, PAGE_SIZE, null);
+    cache.invalidateAll();
+    cache.put(CommentQueries.NEWEST, PAGE_SIZE, null, page, generation);
+
+    Assert.assertFalse(cache.contains(CommentQueries.NEWEST, PAGE_SIZE, null));
+  }
+
+  @Test
+  public void invalidateDropsEveryPage() {
+    long generation = cache.generation();
+    CommentPage page =
+        CommentQueries.readPage(datastore, CommentQueries.NEWEST, PAGE_SIZE, null);
+    cache.put(CommentQueries.NEWEST, PAGE_SIZE, null, page, generation);
+    cache.put(CommentQueries.NEWEST, PAGE_SIZE, page.getNextPageCursor(), page, generation);
+
+    cache.invalidateAll();
+
+    Assert.assertNull(cache.get(CommentQueries.NEWEST, PAGE_SIZE, null));
+    Assert.assertNull(cache.get(CommentQueries.NEWEST, PAGE_SIZE, page.getNextPageCursor()));
+  }
+}
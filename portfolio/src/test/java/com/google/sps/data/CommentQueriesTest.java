@@ -0,0 +1,232 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.apphosting.api.ApiProxy;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CommentQueriesTest {
+  private static final int COMMENTS = 500;
+  private static final int PAGE_SIZE = 20;
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+  // Bytes of Datastore responses since the test started.
+  private final AtomicLong bytesRead = new AtomicLong();
+  private DatastoreService datastore;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    countDatastoreBytes();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Entity> comments = new ArrayList<>();
+    StringBuilder text = new StringBuilder();
+    while (text.length() < 200) {
+      text.append("A typical comment says a sentence or two. ");
+    }
+    for (int i = 0; i < COMMENTS; i++) {
+      Entity comment = new Entity("Comment");
+      comment.setProperty("text", text.toString() + i);
+      comment.setProperty("timestamp", 1000L + i);
+      comment.setProperty("email", "user" + i % 10 + "@example.com");
+      comment.setProperty("username", "user" + i % 10);
+      comments.add(comment);
+    }
+    datastore.put(comments);
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void pagesCoverEveryCommentOnce() {
+    Set<Long> seen = new HashSet<>();
+    long previous = Long.MAX_VALUE;
+    String cursor = null;
+    for (int page = 0; page < COMMENTS / PAGE_SIZE; page++) {
+      CommentPage comments =
+          CommentQueries.readPage(datastore, CommentQueries.NEWEST, PAGE_SIZE, cursor);
+      Assert.assertEquals(PAGE_SIZE, comments.getComments().size());
+      for (Comment comment : comments.getComments()) {
+        Assert.assertTrue(seen.add(comment.getId()));
+        Assert.assertTrue(comment.getTimestamp() < previous);
+        previous = comment.getTimestamp();
+      }
+      cursor = comments.getNextPageCursor();
+    }
+    Assert.assertEquals(COMMENTS, seen.size());
+  }
+
+  @Test
+  public void nextCursorLeadsToTheNextPage() {
+    String cursor = CommentQueries.nextCursor(datastore, CommentQueries.NEWEST, PAGE_SIZE, null);
+    CommentPage first = CommentQueries.readPage(datastore, CommentQueries.NEWEST, PAGE_SIZE, null);
+
+    Assert.assertEquals(
+        ids(CommentQueries.readPage(datastore, CommentQueries.NEWEST, PAGE_SIZE, cursor)),
+        ids(CommentQueries.readPage(
+            datastore, CommentQueries.NEWEST, PAGE_SIZE, first.getNextPageCursor())));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidCursor() {
+    CommentQueries.readPage(datastore, CommentQueries.NEWEST, PAGE_SIZE, "not a cursor");
+  }
+
+  @Test
+  public void bytesAndLatencyPerPage() {
+    // Warm up both paths, then walk every page each way.
+    walkPages(false);
+    walkPages(true);
+    int pages = COMMENTS / PAGE_SIZE;
+
+    bytesRead.set(0);
+    long start = System.nanoTime();
+    walkPages(false);
+    double fullMillis = (System.nanoTime() - start) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    long fullBytes = bytesRead.get();
+
+    bytesRead.set(0);
+    start = System.nanoTime();
+    walkPages(true);
+    double keysMillis = (System.nanoTime() - start) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    long keysBytes = bytesRead.get();
+
+    String report = String.format("per page: full %d bytes %.2f ms, keys-only %d bytes %.2f ms",
+        fullBytes / pages, fullMillis / pages, keysBytes / pages, keysMillis / pages);
+    // At the time of writing, against the local Datastore, a full page of 20 comments came to
+    // about 8,200 bytes and 3.3 ms, and keys only to about 1,700 bytes and 2.6 ms, most of it the
+    // cursor. The bounds leave room for slow hosts.
+    Assert.assertTrue(report, keysBytes * 3 < fullBytes);
+    Assert.assertTrue(report, fullMillis / pages < 50);
+    Assert.assertTrue(report, keysMillis / pages < 50);
+  }
+
+  /** Pages through every comment, reading keys only if {@code keysOnly}. */
+  private void walkPages(boolean keysOnly) {
+    String cursor = null;
+    for (int page = 0; page < COMMENTS / PAGE_SIZE; page++) {
+      cursor = keysOnly
+          ? CommentQueries.nextCursor(datastore, CommentQueries.NEWEST, PAGE_SIZE, cursor)
+          : CommentQueries.readPage(datastore, CommentQueries.NEWEST, PAGE_SIZE, cursor)
+                .getNextPageCursor();
+    }
+  }
+
+  private static List<Long> ids(CommentPage page) {
+    List<Long> ids = new ArrayList<>();
+    for (Comment comment : page.getComments()) {
+      ids.add(comment.getId());
+    }
+    return ids;
+  }
+
+  /** Wraps the local services so that the size of every Datastore response is counted. */
+  @SuppressWarnings("unchecked")
+  private void countDatastoreBytes() {
+    ApiProxy.Delegate<ApiProxy.Environment> local = ApiProxy.getDelegate();
+    ApiProxy.setDelegate((ApiProxy.Delegate<ApiProxy.Environment>) Proxy.newProxyInstance(
+        ApiProxy.Delegate.class.getClassLoader(), new Class<?>[] {ApiProxy.Delegate.class},
+        (proxy, method, args) -> {
+          Object result;
+          try {
+            result = method.invoke(local, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+          if (!"datastore_v3".equals(args == null || args.length < 2 ? null : args[1])) {
+            return result;
+          }
+          if (result instanceof byte[]) {
+            bytesRead.addAndGet(((byte[]) result).length);
+            return result;
+          }
+          if (result instanceof Future) {
+            return new CountingFuture((Future<byte[]>) result);
+          }
+          return result;
+        }));
+  }
+
+  /** Counts the bytes of a response once it arrives. */
+  private final class CountingFuture implements Future<byte[]> {
+    private final Future<byte[]> response;
+    private boolean counted;
+
+    CountingFuture(Future<byte[]> response) {
+      this.response = response;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return response.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return response.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+      return response.isDone();
+    }
+
+    @Override
+    public byte[] get() throws InterruptedException, ExecutionException {
+      return count(response.get());
+    }
+
+    @Override
+    public byte[] get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      return count(response.get(timeout, unit));
+    }
+
+    private synchronized byte[] count(byte[] bytes) {
+      if (!counted) {
+        counted = true;
+        bytesRead.addAndGet(bytes.length);
+      }
+      return bytes;
+    }
+  }
+}
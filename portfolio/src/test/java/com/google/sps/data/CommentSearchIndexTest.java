@@ -0,0 +1,286 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CommentSearchIndexTest {
+  // The index the servlets share is loaded from Datastore when the class is first used.
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void retainKeepsNumbersInTheList() {
+    CommentSearchIndex.Postings postings = new CommentSearchIndex.Postings();
+    // Multiples of 3, with gaps of every varint length past the first few blocks.
+    List<Integer> numbers = new ArrayList<>();
+    for (int number = 0; number < 3000; number += 3) {
+      numbers.add(number);
+    }
+    numbers.add(1 << 20);
+    numbers.add(1 << 29);
+    for (int number : numbers) {
+      postings.add(number);
+    }
+
+    int[] candidates = new int[4000];
+    int count = 0;
+    for (int number = 0; number < 3000; number += 2) {
+      candidates[count++] = number;
+    }
+    candidates[count++] = 1 << 20;
+    candidates[count++] = (1 << 29) - 1;
+    candidates[count++] = 1 << 29;
+    candidates[count++] = (1 << 29) + 1;
+
+    int kept = postings.retain(candidates, count, new int[CommentSearchIndex.Postings.BLOCK]);
+
+    List<Integer> expected = new ArrayList<>();
+    for (int number = 0; number < 3000; number += 6) {
+      expected.add(number);
+    }
+    expected.add(1 << 20);
+    expected.add(1 << 29);
+    Assert.assertEquals(expected.size(), kept);
+    for (int i = 0; i < kept; i++) {
+      Assert.assertEquals(expected.get(i).intValue(), candidates[i]);
+    }
+  }
+
+  @Test
+  public void retainSkipsBlocksWithoutCandidates() {
+    CommentSearchIndex.Postings postings = new CommentSearchIndex.Postings();
+    for (int number = 0; number < 10 * CommentSearchIndex.Postings.BLOCK; number++) {
+      postings.add(number);
+    }
+    int last = 10 * CommentSearchIndex.Postings.BLOCK - 1;
+    int[] candidates = {-5, 0, last, last + 1};
+
+    int kept = postings.retain(candidates, candidates.length,
+        new int[CommentSearchIndex.Postings.BLOCK]);
+
+    Assert.assertEquals(2, kept);
+    Assert.assertEquals(0, candidates[0]);
+    Assert.assertEquals(last, candidates[1]);
+    Assert.assertEquals(10, postings.blockCount());
+  }
+
+  @Test
+  public void decodeBlockReadsEachBlockOnItsOwn() {
+    CommentSearchIndex.Postings postings = new CommentSearchIndex.Postings();
+    for (int number = 0; number < 300; number++) {
+      postings.add(number * 1000);
+    }
+    int[] numbers = new int[CommentSearchIndex.Postings.BLOCK];
+
+    Assert.assertEquals(3, postings.blockCount());
+    Assert.assertEquals(44, postings.decodeBlock(2, numbers));
+    Assert.assertEquals(256000, numbers[0]);
+    Assert.assertEquals(299000, numbers[43]);
+    Assert.assertEquals(128, postings.decodeBlock(1, numbers));
+    Assert.assertEquals(128000, numbers[0]);
+  }
+
+  @Test
+  public void idTableGrows() {
+    CommentSearchIndex.IdTable table = new CommentSearchIndex.IdTable();
+    Random random = new Random(46);
+    long[] ids = new long[100000];
+    for (int i = 0; i < ids.length; i++) {
+      // Sequential IDs, like the tests use, and scattered ones, like Datastore hands out.
+      ids[i] = i % 2 == 0 ? i : random.nextLong();
+      table.put(ids[i], i);
+    }
+
+    for (int i = 0; i < ids.length; i++) {
+      Assert.assertEquals(i, table.get(ids[i]));
+    }
+    Assert.assertEquals(-1, table.get(-1));
+    Assert.assertEquals(-1, table.get(ids.length + 1));
+  }
+
+  @Test
+  public void findsCommentsWithEveryWordNewestFirst() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    index.add(comment(1, "Hello world", "alice"));
+    index.add(comment(2, "hello there", "bob"));
+    index.add(comment(3, "Goodbye world", "alice"));
+
+    Assert.assertEquals(Arrays.asList(2L, 1L), ids(index.search("HELLO", 0, 10)));
+    Assert.assertEquals(Arrays.asList(1L), ids(index.search("world hello", 0, 10)));
+    Assert.assertEquals(Arrays.asList(3L, 1L), ids(index.search("alice", 0, 10)));
+    Assert.assertEquals(Arrays.asList(), ids(index.search("hello nobody", 0, 10)));
+    Assert.assertEquals(Arrays.asList(), ids(index.search("  ", 0, 10)));
+  }
+
+  @Test
+  public void addingTheSameCommentTwiceIndexesItOnce() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    index.add(comment(1, "hello", "alice"));
+    index.add(comment(1, "hello", "alice"));
+
+    Assert.assertEquals(Arrays.asList(1L), ids(index.search("hello", 0, 10)));
+  }
+
+  @Test
+  public void deletedCommentsAreNotFound() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    index.add(comment(1, "hello", "alice"));
+    index.add(comment(2, "hello", "bob"));
+    index.remove(2);
+    index.remove(99);
+
+    CommentPage page = index.search("hello", 0, 10);
+
+    Assert.assertEquals(Arrays.asList(1L), ids(page));
+    Assert.assertNull(page.getNextPageCursor());
+    // A deleted comment stays out even if it is stored again.
+    index.add(comment(2, "hello", "bob"));
+    Assert.assertEquals(Arrays.asList(1L), ids(index.search("hello", 0, 10)));
+  }
+
+  @Test
+  public void pagesSkipDeletedComments() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    // More than a block of matches, so that pages cross block boundaries.
+    int total = 3 * CommentSearchIndex.Postings.BLOCK;
+    List<Long> expected = new ArrayList<>();
+    for (long id = 1; id <= total; id++) {
+      index.add(comment(id, id % 2 == 0 ? "even match" : "odd match", "user"));
+    }
+    for (long id = total; id >= 1; id--) {
+      if (id % 3 == 0) {
+        index.remove(id);
+      } else {
+        expected.add(id);
+      }
+    }
+
+    List<Long> found = new ArrayList<>();
+    int offset = 0;
+    while (true) {
+      CommentPage page = index.search("match", offset, 7);
+      found.addAll(ids(page));
+      if (page.getNextPageCursor() == null) {
+        break;
+      }
+      offset = Integer.parseInt(page.getNextPageCursor());
+    }
+    Assert.assertEquals(expected, found);
+
+    // The rarer word drives the search, but the other still filters it.
+    List<Long> even = new ArrayList<>();
+    for (long id : expected) {
+      if (id % 2 == 0) {
+        even.add(id);
+      }
+    }
+    Assert.assertEquals(even, ids(index.search("match even", 0, total)));
+  }
+
+  @Test
+  public void lastPageHasNoCursorWhenTheRestIsDeleted() {
+    CommentSearchIndex index = new CommentSearchIndex();
+    for (long id = 1; id <= 5; id++) {
+      index.add(comment(id, "hello", "user"));
+    }
+    index.remove(1);
+    index.remove(2);
+
+    CommentPage page = index.search("hello", 0, 3);
+
+    Assert.assertEquals(Arrays.asList(5L, 4L, 3L), ids(page));
+    Assert.assertNull(page.getNextPageCursor());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsEmptyPages() {
+    new CommentSearchIndex().search("hello", 0, 0);
+  }
+
+  @Test
+  public void searchesAMillionCommentsInUnderAMillisecond() {
+    // Texts are drawn from a Zipf-like vocabulary, so the first few words are in most comments.
+    Random random = new Random(20200720L);
+    String[] vocabulary = new String[5000];
+    for (int i = 0; i < vocabulary.length; i++) {
+      vocabulary[i] = "w" + i;
+    }
+    String[] texts = new String[10000];
+    for (int i = 0; i < texts.length; i++) {
+      StringBuilder text = new StringBuilder();
+      for (int w = 0; w < 8; w++) {
+        int rank = (int) Math.pow(vocabulary.length, random.nextDouble()) - 1;
+        text.append(vocabulary[rank]).append(' ');
+      }
+      texts[i] = text.toString();
+    }
+    CommentSearchIndex index = new CommentSearchIndex();
+    for (int id = 1; id <= 1000000; id++) {
+      index.add(comment(id, texts[random.nextInt(texts.length)], "user" + (id % 1000)));
+    }
+    String[] queries = {"w0", "w0 w1", "w1 w2 w3", "w0 w50", "w20 w30", "user7 w0"};
+    for (String query : queries) {
+      Assert.assertFalse(query, index.search(query, 0, 20).getComments().isEmpty());
+    }
+
+    for (int i = 0; i < 2000; i++) {
+      index.search(queries[i % queries.length], 0, 20);
+    }
+    int runs = 6000;
+    long start = System.nanoTime();
+    for (int i = 0; i < runs; i++) {
+      index.search(queries[i % queries.length], 20 * (i % 3), 20);
+    }
+    double millisPerSearch = (System.nanoTime() - start) / 1e6 / runs;
+
+    Assert.assertTrue("Took " + millisPerSearch + " ms", millisPerSearch < 1);
+  }
+
+  private static Comment comment(long id, String text, String username) {
+    return new Comment(id, text, id, username, username + "@example.com");
+  }
+
+  private static List<Long> ids(CommentPage page) {
+    List<Long> ids = new ArrayList<>();
+    for (Comment comment : page.getComments()) {
+      ids.add(comment.getId());
+    }
+    return ids;
+  }
+}
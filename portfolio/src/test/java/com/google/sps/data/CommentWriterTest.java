@@ -0,0 +1,245 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.apphosting.api.ApiProxy;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CommentWriterTest {
+  // How many threads post comments at once in the throughput measurement, and how many each.
+  private static final int POSTERS = 8;
+  private static final int POSTS_EACH = Integer.getInteger("commentWriter.posts", 500);
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+  private DatastoreService datastore;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void closeStoresEverythingQueued() throws InterruptedException {
+    // The flusher can't start until the comments are queued.
+    CountDownLatch flusherMayRun = new CountDownLatch(1);
+    ThreadFactory threads = withEnvironment();
+    CommentWriter writer = new CommentWriter(datastore, runnable -> threads.newThread(() -> {
+      try {
+        flusherMayRun.await();
+      } catch (InterruptedException e) {
+        return;
+      }
+      runnable.run();
+    }));
+    for (int i = 0; i < 250; i++) {
+      writer.add("Comment " + i, i, "user@example.com", "user");
+    }
+    Assert.assertEquals(250, writer.getQueued());
+    Assert.assertEquals(0, storedComments());
+
+    flusherMayRun.countDown();
+    writer.close();
+
+    Assert.assertEquals(0, writer.getQueued());
+    Assert.assertEquals(250, storedComments());
+  }
+
+  @Test
+  public void commentDeletedWhileQueuedIsNotStored() throws InterruptedException {
+    CountDownLatch flusherMayRun = new CountDownLatch(1);
+    ThreadFactory threads = withEnvironment();
+    CommentWriter writer = new CommentWriter(datastore, runnable -> threads.newThread(() -> {
+      try {
+        flusherMayRun.await();
+      } catch (InterruptedException e) {
+        return;
+      }
+      runnable.run();
+    }));
+    long deleted = writer.add("Deleted", 1, "user@example.com", "user");
+    writer.add("Kept", 2, "user@example.com", "user");
+
+    List<Comment> cancelled = writer.cancel(Collections.singletonList(deleted));
+    flusherMayRun.countDown();
+    writer.close();
+
+    Assert.assertEquals(1, cancelled.size());
+    Assert.assertEquals(deleted, cancelled.get(0).getId());
+    Assert.assertEquals(1, storedComments());
+  }
+
+  @Test
+  public void cancelLeavesStoredCommentsAlone() {
+    CommentWriter writer = new CommentWriter(datastore, null);
+    long id = writer.add("Comment", 1, "user@example.com", "user");
+
+    Assert.assertTrue(writer.cancel(Collections.singletonList(id)).isEmpty());
+    Assert.assertEquals(1, storedComments());
+  }
+
+  @Test
+  public void storesAsPostedWhenThreadsCantStart() {
+    CommentWriter writer = new CommentWriter(datastore, runnable -> {
+      throw new IllegalStateException("Background threads aren't allowed");
+    });
+
+    writer.add("Comment", 1, "user@example.com", "user");
+
+    Assert.assertEquals(1, storedComments());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void failedPutIsThrownWhenStoringAsPosted() {
+    DatastoreService failing = (DatastoreService) Proxy.newProxyInstance(
+        DatastoreService.class.getClassLoader(), new Class<?>[] {DatastoreService.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("put")) {
+            throw new IllegalStateException("Datastore is down");
+          }
+          try {
+            return method.invoke(datastore, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+    CommentWriter writer = new CommentWriter(failing, null);
+
+    writer.add("Comment", 1, "user@example.com", "user");
+  }
+
+  @Test
+  public void storedCommentIsKeptWhenCountingFails() {
+    failCounterTransactions();
+    CommentWriter writer = new CommentWriter(datastore, null);
+
+    long id = writer.add("Comment", 1, "user@example.com", "user");
+
+    Assert.assertTrue(id > 0);
+    Assert.assertEquals(1, storedComments());
+  }
+
+  @Test
+  public void flusherCarriesOnWhenCountingFails() throws InterruptedException {
+    failCounterTransactions();
+    CommentWriter writer = new CommentWriter(datastore, withEnvironment());
+
+    writer.add("Comment 1", 1, "user@example.com", "user");
+    while (writer.getQueued() > 0 || storedComments() == 0) {
+      Thread.sleep(10);
+    }
+    writer.add("Comment 2", 2, "user@example.com", "user");
+    while (writer.getQueued() > 0 || storedComments() == 1) {
+      Thread.sleep(10);
+    }
+    writer.close();
+
+    Assert.assertEquals(2, storedComments());
+  }
+
+  @Test
+  public void throughputUnderConcurrentPosting() throws InterruptedException {
+    CommentWriter writer = new CommentWriter(datastore, withEnvironment());
+    ThreadFactory threads = withEnvironment();
+    List<Thread> posters = new ArrayList<>();
+    for (int i = 0; i < POSTERS; i++) {
+      int poster = i;
+      posters.add(threads.newThread(() -> {
+        for (int j = 0; j < POSTS_EACH; j++) {
+          writer.add("Comment " + j, j, "user" + poster + "@example.com", "user" + poster);
+        }
+      }));
+    }
+
+    long start = System.nanoTime();
+    for (Thread poster : posters) {
+      poster.start();
+    }
+    for (Thread poster : posters) {
+      poster.join();
+    }
+    long posted = System.nanoTime() - start;
+    writer.close();
+    long stored = System.nanoTime() - start;
+
+    Assert.assertEquals(POSTERS * POSTS_EACH, storedComments());
+    // Posting only queues, so it is much faster than storing. Against the local Datastore that
+    // was about 40,000 comments/s posted and 5,000 stored at the time of writing; the bounds leave
+    // room for slow hosts.
+    double postedPerSecond = POSTERS * POSTS_EACH * (double) TimeUnit.SECONDS.toNanos(1) / posted;
+    double storedPerSecond = POSTERS * POSTS_EACH * (double) TimeUnit.SECONDS.toNanos(1) / stored;
+    Assert.assertTrue(postedPerSecond + " comments/s posted", postedPerSecond > 4000);
+    Assert.assertTrue(storedPerSecond + " comments/s stored", storedPerSecond > 500);
+  }
+
+  private int storedComments() {
+    return datastore.prepare(new Query("Comment").setKeysOnly())
+        .countEntities(FetchOptions.Builder.withDefaults());
+  }
+
+  /** Makes every Datastore transaction, which only CommentCounter uses here, fail to start. */
+  @SuppressWarnings("unchecked")
+  private static void failCounterTransactions() {
+    ApiProxy.Delegate<ApiProxy.Environment> local = ApiProxy.getDelegate();
+    ApiProxy.setDelegate((ApiProxy.Delegate<ApiProxy.Environment>) Proxy.newProxyInstance(
+        ApiProxy.Delegate.class.getClassLoader(), new Class<?>[] {ApiProxy.Delegate.class},
+        (proxy, method, args) -> {
+          if (args != null && args.length > 2 && "BeginTransaction".equals(args[2])) {
+            throw new IllegalStateException("Transactions are down");
+          }
+          try {
+            return method.invoke(local, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        }));
+  }
+
+  /** Returns a factory for threads that can call the local services, as a request thread can. */
+  private static ThreadFactory withEnvironment() {
+    ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+    return runnable -> new Thread(() -> {
+      ApiProxy.setEnvironmentForCurrentThread(environment);
+      runnable.run();
+    });
+  }
+}
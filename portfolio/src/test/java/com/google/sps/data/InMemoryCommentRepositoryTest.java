@@ -0,0 +1,173 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class InMemoryCommentRepositoryTest {
+  // The search index the repository keeps up to date is loaded from Datastore when first used.
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+  private final InMemoryCommentRepository comments = new InMemoryCommentRepository();
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void pagesWalkEveryCommentInEitherOrder() {
+    // Two comments share each timestamp, so that the ID has to tell them apart.
+    List<Long> oldestFirst = new ArrayList<>();
+    for (int i = 0; i < 7; i++) {
+      oldestFirst.add(comments.add("Comment " + i, i / 2, "user@example.com", "user"));
+    }
+    List<Long> newestFirst = new ArrayList<>(oldestFirst);
+    Collections.reverse(newestFirst);
+
+    Assert.assertEquals(oldestFirst, readAll(CommentQueries.OLDEST, 2));
+    Assert.assertEquals(newestFirst, readAll("newest", 2));
+    Assert.assertEquals(newestFirst, readAll("newest", 3));
+  }
+
+  @Test
+  public void nextCursorMatchesThePageCursor() {
+    for (int i = 0; i < 5; i++) {
+      comments.add("Comment " + i, i, "user@example.com", "user");
+    }
+
+    String cursor = null;
+    for (int page = 0; page < 3; page++) {
+      String next = comments.nextCursor("newest", 2, cursor);
+      Assert.assertEquals(comments.readPage("newest", 2, cursor).getNextPageCursor(), next);
+      cursor = next;
+    }
+  }
+
+  @Test
+  public void pageAfterTheLastKeepsItsCursor() {
+    comments.add("Comment", 1, "user@example.com", "user");
+    String cursor = comments.readPage("newest", 10, "null").getNextPageCursor();
+
+    CommentPage page = comments.readPage("newest", 10, cursor);
+
+    Assert.assertTrue(page.getComments().isEmpty());
+    Assert.assertEquals(cursor, page.getNextPageCursor());
+    Assert.assertEquals(cursor, comments.nextCursor("newest", 10, cursor));
+  }
+
+  @Test
+  public void cursorOfDeletedCommentStillContinues() {
+    long first = comments.add("First", 1, "user@example.com", "user");
+    long second = comments.add("Second", 2, "user@example.com", "user");
+    long third = comments.add("Third", 3, "user@example.com", "user");
+    String cursor = comments.readPage(CommentQueries.OLDEST, 2, null).getNextPageCursor();
+
+    comments.delete(Collections.singletonList(second));
+
+    CommentPage next = comments.readPage(CommentQueries.OLDEST, 2, cursor);
+    Assert.assertEquals(Arrays.asList(third), ids(next));
+    Assert.assertEquals(Arrays.asList(first, third), readAll(CommentQueries.OLDEST, 2));
+  }
+
+  @Test
+  public void badCursorsAreRejected() {
+    comments.add("Comment", 1, "user@example.com", "user");
+    // The last one is a Datastore cursor, from the other backend.
+    String[] cursors = {"", "garbage", "12:", ":12", "12:abc", "1:2:3",
+        "E-ABAIICK2oUZGV2fnBvcnRmb2xpb3IPCxIHQ29tbWVudBjpBwwU"};
+
+    for (String cursor : cursors) {
+      try {
+        comments.readPage("newest", 10, cursor);
+        Assert.fail("Read a page after " + cursor);
+      } catch (IllegalArgumentException expected) {
+      }
+      try {
+        comments.nextCursor("newest", 10, cursor);
+        Assert.fail("Found the cursor after " + cursor);
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void findsAndDeletesMatchingComments() {
+    long spam = comments.add("Spam", 1, "spam@example.com", "spammer");
+    long early = comments.add("Early", 1, "katie@example.com", "katie");
+    long late = comments.add("Late", 5, "katie@example.com", "katie");
+
+    Assert.assertEquals(Arrays.asList(early, late),
+        list(comments.findIds("katie", null, null, null)));
+    Assert.assertEquals(Arrays.asList(late),
+        list(comments.findIds(null, "katie@example.com", 2L, null)));
+    Assert.assertEquals(Arrays.asList(spam, early),
+        list(comments.findIds(null, null, null, 5L)));
+
+    List<Comment> deleted = comments.delete(Arrays.asList(spam, spam + 100));
+
+    Assert.assertEquals(1, deleted.size());
+    Assert.assertEquals(2, comments.count());
+    Assert.assertEquals(0, comments.count("spammer"));
+    Assert.assertEquals(2, comments.count("katie"));
+    Assert.assertEquals(0, comments.count("nobody"));
+  }
+
+  /** Returns the IDs of every comment in {@code order}, read {@code pageSize} at a time. */
+  private List<Long> readAll(String order, int pageSize) {
+    List<Long> ids = new ArrayList<>();
+    String cursor = null;
+    while (true) {
+      CommentPage page = comments.readPage(order, pageSize, cursor);
+      if (page.getComments().isEmpty()) {
+        return ids;
+      }
+      ids.addAll(ids(page));
+      cursor = page.getNextPageCursor();
+    }
+  }
+
+  private static List<Long> ids(CommentPage page) {
+    List<Long> ids = new ArrayList<>();
+    for (Comment comment : page.getComments()) {
+      ids.add(comment.getId());
+    }
+    return ids;
+  }
+
+  private static List<Long> list(Iterable<Long> ids) {
+    List<Long> list = new ArrayList<>();
+    ids.forEach(list::add);
+    return list;
+  }
+}
@@ -0,0 +1,82 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class InMemoryUserRepositoryTest {
+  private final InMemoryUserRepository users = new InMemoryUserRepository();
+
+  @Test
+  public void nameBelongsToItsFirstClaimant() {
+    Assert.assertTrue(users.claimUsername("katie", "user-1"));
+    Assert.assertFalse(users.claimUsername("katie", "user-2"));
+    Assert.assertTrue(users.claimUsername("katie", "user-1"));
+
+    Assert.assertEquals("katie", users.getUsername("user-1"));
+    Assert.assertNull(users.getUsername("user-2"));
+  }
+
+  @Test
+  public void earlierNameStaysTaken() {
+    Assert.assertTrue(users.claimUsername("katie", "user-1"));
+    Assert.assertTrue(users.claimUsername("kate", "user-1"));
+
+    Assert.assertEquals("kate", users.getUsername("user-1"));
+    Assert.assertFalse(users.claimUsername("katie", "user-2"));
+    // Its owner can still go back to it.
+    Assert.assertTrue(users.claimUsername("katie", "user-1"));
+  }
+
+  @Test
+  public void racingClaimsHaveOneWinner() throws InterruptedException {
+    for (int round = 0; round < 100; round++) {
+      String name = "popular-" + round;
+      CountDownLatch start = new CountDownLatch(1);
+      AtomicInteger winners = new AtomicInteger();
+      List<Thread> claimants = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        String userId = "user-" + i;
+        claimants.add(new Thread(() -> {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          if (users.claimUsername(name, userId)) {
+            winners.incrementAndGet();
+          }
+        }));
+      }
+      for (Thread claimant : claimants) {
+        claimant.start();
+      }
+      start.countDown();
+      for (Thread claimant : claimants) {
+        claimant.join();
+      }
+      Assert.assertEquals(name, 1, winners.get());
+    }
+  }
+}
@@ -0,0 +1,151 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class RateLimiterTest {
+  // The default for portfolio.rateLimit.keys.
+  private static final int MAX_KEYS = 100000;
+
+  @Test
+  public void allowsABurstThenRefuses() {
+    RateLimiter limiter = new RateLimiter(3, 1, TimeUnit.HOURS);
+
+    Assert.assertEquals(0, limiter.acquire("user"));
+    Assert.assertEquals(0, limiter.acquire("user"));
+    Assert.assertEquals(0, limiter.acquire("user"));
+    long wait = limiter.acquire("user");
+
+    Assert.assertTrue(wait > TimeUnit.MINUTES.toMillis(59));
+    Assert.assertTrue(wait <= TimeUnit.HOURS.toMillis(1));
+    Assert.assertEquals(0, limiter.acquire("someone else"));
+    Assert.assertEquals(4, limiter.getAllowed());
+    Assert.assertEquals(1, limiter.getLimited());
+  }
+
+  @Test
+  public void refillsOneTokenAtATime() throws InterruptedException {
+    RateLimiter limiter = new RateLimiter(2, 200, TimeUnit.MILLISECONDS);
+    limiter.acquire("user");
+    limiter.acquire("user");
+    Assert.assertTrue(limiter.acquire("user") > 0);
+
+    Thread.sleep(250);
+
+    Assert.assertEquals(0, limiter.acquire("user"));
+    Assert.assertTrue(limiter.acquire("user") > 0);
+  }
+
+  @Test
+  public void idleBucketsFillUpToCapacityOnly() throws InterruptedException {
+    RateLimiter limiter = new RateLimiter(2, 20, TimeUnit.MILLISECONDS);
+    limiter.acquire("user");
+
+    Thread.sleep(200);
+
+    Assert.assertEquals(0, limiter.acquire("user"));
+    Assert.assertEquals(0, limiter.acquire("user"));
+    Assert.assertTrue(limiter.acquire("user") > 0);
+  }
+
+  @Test
+  public void releaseGivesATokenBack() {
+    RateLimiter limiter = new RateLimiter(1, 1, TimeUnit.HOURS);
+    limiter.acquire("user");
+
+    limiter.release("user");
+
+    Assert.assertEquals(0, limiter.acquire("user"));
+    Assert.assertTrue(limiter.acquire("user") > 0);
+    Assert.assertEquals(1, limiter.getAllowed());
+  }
+
+  @Test
+  public void releaseOfDroppedBucketChangesNothing() {
+    RateLimiter limiter = new RateLimiter(1, 1, TimeUnit.HOURS);
+    for (int i = 0; i < MAX_KEYS; i++) {
+      limiter.acquire("user" + i);
+    }
+    // Drops every bucket, since none has filled up again.
+    limiter.acquire("new user");
+
+    limiter.release("user0");
+    limiter.release("nobody");
+
+    Assert.assertEquals(MAX_KEYS + 1, limiter.getAllowed());
+    Assert.assertEquals(1, limiter.getKeyCount());
+  }
+
+  @Test
+  public void fullBucketsExpireWhenThereAreTooManyKeys() throws InterruptedException {
+    RateLimiter limiter = new RateLimiter(1, 1, TimeUnit.MILLISECONDS);
+    for (int i = 0; i < MAX_KEYS; i++) {
+      limiter.acquire("user" + i);
+    }
+    Assert.assertEquals(MAX_KEYS, limiter.getKeyCount());
+
+    Thread.sleep(10);
+    limiter.acquire("new user");
+
+    Assert.assertEquals(1, limiter.getKeyCount());
+  }
+
+  @Test
+  public void everyBucketIsDroppedWhenNoneHasExpired() {
+    RateLimiter limiter = new RateLimiter(1, 1, TimeUnit.HOURS);
+    for (int i = 0; i < MAX_KEYS; i++) {
+      limiter.acquire("user" + i);
+    }
+    Assert.assertTrue(limiter.acquire("user0") > 0);
+
+    limiter.acquire("new user");
+
+    Assert.assertEquals(1, limiter.getKeyCount());
+    // Forgotten, so allowed again.
+    Assert.assertEquals(0, limiter.acquire("user0"));
+  }
+
+  @Test
+  public void checksFiftyThousandTimesASecond() {
+    // Most checks are refused, as they would be under a flood.
+    RateLimiter limiter = new RateLimiter(5, 10, TimeUnit.SECONDS);
+    String[] keys = new String[50000];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = "user" + i;
+    }
+    for (int i = 0; i < 200000; i++) {
+      limiter.acquire(keys[i % keys.length]);
+    }
+
+    int checks = 1000000;
+    long start = System.nanoTime();
+    for (int i = 0; i < checks; i++) {
+      limiter.acquire(keys[i % keys.length]);
+    }
+    double checksPerSecond = checks * (double) TimeUnit.SECONDS.toNanos(1)
+        / (System.nanoTime() - start);
+
+    // That was millions of checks a second at the time of writing; the bound leaves room for slow
+    // hosts.
+    Assert.assertTrue(checksPerSecond + " checks/s", checksPerSecond > 50000);
+  }
+}
@@ -0,0 +1,56 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class RateLimitsTest {
+  // Addresses from the documentation range, so that no other test shares their buckets.
+  private static final String ADDRESS = "192.0.2.1";
+
+  @Test
+  public void refusedUsersDontUseUpTheirAddress() {
+    // The default bursts: 5 comments per user, 20 per address.
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals(0, RateLimits.acquireComment("flooder", ADDRESS));
+    }
+    for (int i = 0; i < 50; i++) {
+      Assert.assertTrue(RateLimits.acquireComment("flooder", ADDRESS) > 0);
+    }
+
+    for (int user = 0; user < 3; user++) {
+      for (int i = 0; i < 5; i++) {
+        Assert.assertEquals(0, RateLimits.acquireComment("user" + user, ADDRESS));
+      }
+    }
+  }
+
+  @Test
+  public void busyAddressesAreRefused() {
+    String address = "192.0.2.2";
+    for (int user = 0; user < 4; user++) {
+      for (int i = 0; i < 5; i++) {
+        Assert.assertEquals(0, RateLimits.acquireComment("neighbour" + user, address));
+      }
+    }
+
+    Assert.assertTrue(RateLimits.acquireComment("newcomer", address) > 0);
+  }
+}
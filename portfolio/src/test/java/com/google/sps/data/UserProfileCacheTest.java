@@ -0,0 +1,122 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class UserProfileCacheTest {
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+  private DatastoreService datastore;
+  // How many times the cache has read a user from the Datastore.
+  private final AtomicInteger reads = new AtomicInteger();
+  // Run by the Datastore after each read, before the cache sees what was read.
+  private Runnable afterRead = () -> { };
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void hitIsServedWithoutReading() {
+    storeUsername("user-1", "katie");
+    UserProfileCache cache = new UserProfileCache(countingDatastore());
+
+    Assert.assertEquals("katie", cache.getUsername("user-1"));
+    Assert.assertEquals("katie", cache.getUsername("user-1"));
+    Assert.assertEquals(1, reads.get());
+  }
+
+  @Test
+  public void userWithoutUsernameIsCachedToo() {
+    UserProfileCache cache = new UserProfileCache(countingDatastore());
+
+    Assert.assertNull(cache.getUsername("user-1"));
+    Assert.assertNull(cache.getUsername("user-1"));
+    Assert.assertEquals(1, reads.get());
+  }
+
+  @Test
+  public void setUsernameIsSeenWithoutReading() {
+    UserProfileCache cache = new UserProfileCache(countingDatastore());
+
+    cache.setUsername("user-1", "katie");
+
+    Assert.assertEquals("katie", cache.getUsername("user-1"));
+    Assert.assertEquals(0, reads.get());
+  }
+
+  @Test
+  public void usernameSetWhileReadingIsNotOverwritten() {
+    UserProfileCache cache = new UserProfileCache(countingDatastore());
+    // The user picks a name after the miss has read that they have none.
+    afterRead = () -> {
+      storeUsername("user-1", "katie");
+      cache.setUsername("user-1", "katie");
+    };
+
+    Assert.assertNull(cache.getUsername("user-1"));
+
+    afterRead = () -> { };
+    Assert.assertEquals("katie", cache.getUsername("user-1"));
+    Assert.assertEquals(1, reads.get());
+  }
+
+  private void storeUsername(String id, String username) {
+    Entity userInfo = new Entity("UserInfo", id);
+    userInfo.setProperty("username", username);
+    datastore.put(userInfo);
+  }
+
+  /** Returns the test's Datastore, counting reads and running {@link #afterRead} after each. */
+  private DatastoreService countingDatastore() {
+    return (DatastoreService) Proxy.newProxyInstance(
+        DatastoreService.class.getClassLoader(), new Class<?>[] {DatastoreService.class},
+        (proxy, method, args) -> {
+          try {
+            return method.invoke(datastore, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          } finally {
+            if (method.getName().equals("get")) {
+              reads.incrementAndGet();
+              afterRead.run();
+            }
+          }
+        });
+  }
+}
@@ -0,0 +1,141 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.apphosting.api.ApiProxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class UsernameRegistryTest {
+  private static final int CLAIMANTS = 16;
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+  private DatastoreService datastore;
+  private UsernameRegistry registry;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+    registry = new UsernameRegistry(datastore);
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void nameBelongsToItsFirstClaimant() throws EntityNotFoundException {
+    Assert.assertTrue(registry.claim("katie", "user-1"));
+    Assert.assertFalse(registry.claim("katie", "user-2"));
+    // Claiming your own name again is fine.
+    Assert.assertTrue(registry.claim("katie", "user-1"));
+
+    Assert.assertEquals("user-1",
+        datastore.get(KeyFactory.createKey("Username", "katie")).getProperty("owner"));
+    Assert.assertEquals("katie",
+        datastore.get(KeyFactory.createKey("UserInfo", "user-1")).getProperty("username"));
+  }
+
+  @Test
+  public void nameClaimedElsewhereIsSeen() {
+    // The filter is loaded first, so the claim below was never seen by this registry.
+    Assert.assertTrue(registry.claim("someone", "user-1"));
+    Entity claimedElsewhere = new Entity("Username", "katie");
+    claimedElsewhere.setProperty("owner", "user-2");
+    datastore.put(claimedElsewhere);
+
+    Assert.assertFalse(registry.claim("katie", "user-1"));
+  }
+
+  @Test
+  public void takenNamesAreLoadedABatchPerClaim() {
+    List<Entity> names = new ArrayList<>();
+    for (int i = 0; i < 2 * UsernameRegistry.LOAD_BATCH + 1; i++) {
+      Entity name = new Entity("Username", "name-" + i);
+      name.setProperty("owner", "someone");
+      names.add(name);
+    }
+    datastore.put(names);
+
+    // Loads the first batch, and is refused by the transaction.
+    Assert.assertFalse(registry.claim("name-0", "user-1"));
+    // Loads the second, which still isn't the last.
+    Assert.assertFalse(registry.namesLoaded());
+    // Loads the rest.
+    Assert.assertFalse(registry.claim("name-" + 2 * UsernameRegistry.LOAD_BATCH, "user-1"));
+    Assert.assertTrue(registry.namesLoaded());
+    Assert.assertTrue(registry.claim("katie", "user-1"));
+  }
+
+  @Test
+  public void racingClaimsHaveOneWinner() throws Exception {
+    for (int round = 0; round < 5; round++) {
+      String name = "popular-" + round;
+      CountDownLatch start = new CountDownLatch(1);
+      AtomicInteger winners = new AtomicInteger();
+      List<String> winnerIds = new ArrayList<>();
+      List<Thread> claimants = new ArrayList<>();
+      ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+      for (int i = 0; i < CLAIMANTS; i++) {
+        String userId = "user-" + i;
+        claimants.add(new Thread(() -> {
+          ApiProxy.setEnvironmentForCurrentThread(environment);
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          if (registry.claim(name, userId)) {
+            winners.incrementAndGet();
+            synchronized (winnerIds) {
+              winnerIds.add(userId);
+            }
+          }
+        }));
+      }
+      for (Thread claimant : claimants) {
+        claimant.start();
+      }
+      start.countDown();
+      for (Thread claimant : claimants) {
+        claimant.join();
+      }
+
+      Assert.assertEquals(name, 1, winners.get());
+      Assert.assertEquals(winnerIds.get(0),
+          datastore.get(KeyFactory.createKey("Username", name)).getProperty("owner"));
+    }
+  }
+}
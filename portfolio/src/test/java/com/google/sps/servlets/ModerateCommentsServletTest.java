@@ -0,0 +1,252 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalUserServiceTestConfig;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class ModerateCommentsServletTest {
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(
+              new LocalDatastoreServiceTestConfig(), new LocalUserServiceTestConfig())
+          .setEnvIsLoggedIn(true)
+          .setEnvIsAdmin(true)
+          .setEnvEmail("admin@example.com")
+          .setEnvAuthDomain("example.com");
+  private DatastoreService datastore;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void deletesByUsername() throws IOException {
+    storeComment("katie", "katie@example.com", 1);
+    storeComment("katie", "katie@example.com", 2);
+    storeComment("bob", "bob@example.com", 3);
+
+    Exchange exchange = post("username", "katie");
+
+    Assert.assertEquals(HttpServletResponse.SC_OK, exchange.status.get());
+    Assert.assertEquals(2, exchange.summary().get("deleted").getAsLong());
+    Assert.assertEquals(1, remaining("bob"));
+    Assert.assertEquals(0, remaining("katie"));
+  }
+
+  @Test
+  public void deletesByEmail() throws IOException {
+    storeComment("katie", "katie@example.com", 1);
+    storeComment("katie", "spam@example.com", 2);
+    storeComment("bob", "spam@example.com", 3);
+
+    Exchange exchange = post("email", "spam@example.com");
+
+    Assert.assertEquals(2, exchange.summary().get("deleted").getAsLong());
+    Assert.assertEquals(1, remaining("katie"));
+    Assert.assertEquals(0, remaining("bob"));
+  }
+
+  @Test
+  public void deletesByUsernameWithinRange() throws IOException {
+    storeComment("katie", "katie@example.com", 1);
+    storeComment("katie", "katie@example.com", 2);
+    storeComment("katie", "katie@example.com", 3);
+
+    Exchange exchange = post("username", "katie", "from", "2", "to", "3");
+
+    Assert.assertEquals(1, exchange.summary().get("deleted").getAsLong());
+    Assert.assertEquals(2, remaining("katie"));
+  }
+
+  @Test
+  public void deletesByEmailAndUsername() throws IOException {
+    storeComment("katie", "spam@example.com", 1);
+    storeComment("bob", "spam@example.com", 2);
+
+    Exchange exchange = post("username", "katie", "email", "spam@example.com");
+
+    Assert.assertEquals(1, exchange.summary().get("deleted").getAsLong());
+    Assert.assertEquals(0, remaining("katie"));
+    Assert.assertEquals(1, remaining("bob"));
+  }
+
+  @Test
+  public void deletesById() throws IOException {
+    long id = storeComment("katie", "katie@example.com", 1);
+    storeComment("katie", "katie@example.com", 2);
+
+    Exchange exchange = post("id", Long.toString(id));
+
+    Assert.assertEquals(1, exchange.summary().get("deleted").getAsLong());
+    Assert.assertEquals(1, remaining("katie"));
+  }
+
+  @Test
+  public void reportsProgressPerBatch() throws IOException {
+    for (int i = 0; i < 501; i++) {
+      storeComment("spammer", "spam@example.com", i);
+    }
+
+    Exchange exchange = post("username", "spammer");
+
+    String[] lines = exchange.sent.toString().trim().split("\n");
+    Assert.assertEquals(2, lines.length);
+    Assert.assertEquals(500, JsonParser.parseString(lines[0]).getAsJsonObject()
+        .get("deleted").getAsLong());
+    Assert.assertEquals(501, exchange.summary().get("deleted").getAsLong());
+    Assert.assertTrue(exchange.summary().get("done").getAsBoolean());
+    Assert.assertEquals(0, remaining("spammer"));
+  }
+
+  @Test
+  public void requestWithoutFiltersIsRefused() throws IOException {
+    storeComment("katie", "katie@example.com", 1);
+
+    Exchange exchange = post();
+
+    Assert.assertEquals(HttpServletResponse.SC_BAD_REQUEST, exchange.status.get());
+    Assert.assertEquals(1, remaining("katie"));
+  }
+
+  @Test
+  public void badNumberIsRefused() throws IOException {
+    Exchange exchange = post("username", "katie", "from", "yesterday");
+
+    Assert.assertEquals(HttpServletResponse.SC_BAD_REQUEST, exchange.status.get());
+  }
+
+  @Test
+  public void nonAdminIsForbidden() throws IOException {
+    helper.tearDown();
+    helper.setEnvIsAdmin(false).setUp();
+    storeComment("katie", "katie@example.com", 1);
+
+    Exchange exchange = post("username", "katie");
+
+    Assert.assertEquals(HttpServletResponse.SC_FORBIDDEN, exchange.status.get());
+    Assert.assertEquals(1, remaining("katie"));
+  }
+
+  private long storeComment(String username, String email, long timestamp) {
+    Entity comment = new Entity("Comment");
+    comment.setProperty("text", "Comment at " + timestamp);
+    comment.setProperty("timestamp", timestamp);
+    comment.setProperty("email", email);
+    comment.setProperty("username", username);
+    return datastore.put(comment).getId();
+  }
+
+  private int remaining(String username) {
+    Query query = new Query("Comment").setFilter(
+        new Query.FilterPredicate("username", Query.FilterOperator.EQUAL, username));
+    return datastore.prepare(query).countEntities(FetchOptions.Builder.withDefaults());
+  }
+
+  /** Posts {@code parameters}, given as name-value pairs, to a new servlet. */
+  private static Exchange post(String... parameters) throws IOException {
+    Map<String, List<String>> values = new HashMap<>();
+    for (int i = 0; i < parameters.length; i += 2) {
+      values.computeIfAbsent(parameters[i], name -> new ArrayList<>()).add(parameters[i + 1]);
+    }
+    Exchange exchange = new Exchange();
+    new ModerateCommentsServlet().doPost(exchange.request(values), exchange.response());
+    return exchange;
+  }
+
+  /** A request and the response the servlet sent to it. */
+  private static final class Exchange {
+    final AtomicInteger status = new AtomicInteger(HttpServletResponse.SC_OK);
+    final StringWriter sent = new StringWriter();
+
+    HttpServletRequest request(Map<String, List<String>> values) {
+      return stub(HttpServletRequest.class, (name, args) -> {
+        List<String> value = args == null ? null : values.get((String) args[0]);
+        switch (name) {
+          case "getParameter":
+            return value == null ? null : value.get(0);
+          case "getParameterValues":
+            return value == null ? null : value.toArray(new String[0]);
+          default:
+            return null;
+        }
+      });
+    }
+
+    HttpServletResponse response() {
+      PrintWriter writer = new PrintWriter(sent, true);
+      return stub(HttpServletResponse.class, (name, args) -> {
+        switch (name) {
+          case "sendError":
+            status.set((Integer) args[0]);
+            return null;
+          case "getWriter":
+            return writer;
+          default:
+            return null;
+        }
+      });
+    }
+
+    /** Returns the last line sent, which sums up the whole deletion. */
+    JsonObject summary() {
+      String[] lines = sent.toString().trim().split("\n");
+      return JsonParser.parseString(lines[lines.length - 1]).getAsJsonObject();
+    }
+  }
+
+  private interface Answer {
+    Object answer(String method, Object[] args);
+  }
+
+  /** Returns an implementation of {@code type} whose methods all go to {@code answer}. */
+  private static <T> T stub(Class<T> type, Answer answer) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        (proxy, method, args) -> answer.answer(method.getName(), args)));
+  }
+}
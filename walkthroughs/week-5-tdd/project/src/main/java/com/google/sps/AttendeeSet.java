@@ -0,0 +1,159 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Immutable set of attendee names, built once per event so that reading it costs nothing. Small
+ * sets, which is most meetings, are a plain array searched from the front; bigger ones also keep
+ * an open-addressing hash table so that {@code contains} stays constant-time. All fields are final,
+ * so instances can be shared between threads without synchronization.
+ */
+final class AttendeeSet extends AbstractSet<String> {
+  // Sets up to this size are searched linearly. Comparing a handful of references and string
+  // hashes beats hashing the key and probing a table.
+  static final int LINEAR_SEARCH_LIMIT = 8;
+
+  private static final AttendeeSet EMPTY = new AttendeeSet(new String[0], null);
+
+  private final String[] names;
+  // Null for sets searched linearly. Otherwise a power-of-two sized table, at most half full.
+  private final String[] table;
+  private final int hashCode;
+
+  private AttendeeSet(String[] names, String[] table) {
+    this.names = names;
+    this.table = table;
+    int hash = 0;
+    for (String name : names) {
+      hash += name.hashCode();
+    }
+    this.hashCode = hash;
+  }
+
+  /**
+   * Returns a set of {@code attendees}, in the order first seen.
+   *
+   * @throws IllegalArgumentException if any attendee is null.
+   */
+  static AttendeeSet of(Collection<String> attendees) {
+    if (attendees instanceof AttendeeSet) {
+      return (AttendeeSet) attendees;
+    }
+    if (attendees.isEmpty()) {
+      return EMPTY;
+    }
+    LinkedHashSet<String> distinct = new LinkedHashSet<>(attendees);
+    if (distinct.contains(null)) {
+      throw new IllegalArgumentException("attendees cannot contain null");
+    }
+    String[] names = distinct.toArray(new String[0]);
+    if (names.length <= LINEAR_SEARCH_LIMIT) {
+      return new AttendeeSet(names, null);
+    }
+
+    String[] table = new String[Integer.highestOneBit(names.length - 1) << 2];
+    int mask = table.length - 1;
+    for (String name : names) {
+      int slot = spread(name.hashCode()) & mask;
+      while (table[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = name;
+    }
+    return new AttendeeSet(names, table);
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (table == null) {
+      for (String name : names) {
+        if (name == o || name.equals(o)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (o == null) {
+      return false;
+    }
+    int mask = table.length - 1;
+    for (int slot = spread(o.hashCode()) & mask; table[slot] != null; slot = (slot + 1) & mask) {
+      if (table[slot].equals(o)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int size() {
+    return names.length;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return names.length == 0;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return new Iterator<String>() {
+      private int next;
+
+      @Override
+      public boolean hasNext() {
+        return next < names.length;
+      }
+
+      @Override
+      public String next() {
+        if (next >= names.length) {
+          throw new NoSuchElementException();
+        }
+        return names[next++];
+      }
+    };
+  }
+
+  @Override
+  public void forEach(Consumer<? super String> action) {
+    for (String name : names) {
+      action.accept(name);
+    }
+  }
+
+  @Override
+  public Object[] toArray() {
+    return Arrays.copyOf(names, names.length, Object[].class);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  // Mixes the high bits of the hash into the low ones, which are all the table looks at.
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
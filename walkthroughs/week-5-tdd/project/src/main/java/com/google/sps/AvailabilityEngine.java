@@ -0,0 +1,37 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+
+/**
+ * Strategy for finding the times of day when a meeting could take place. Every implementation must
+ * return exactly the same ranges for the same input so that callers can swap engines freely (see
+ * {@link AvailabilityEngines}).
+ */
+public interface AvailabilityEngine {
+  /**
+   * Returns the ranges, in ascending order of start time, in which the meeting described by
+   * {@code request} could take place given the already scheduled {@code events}.
+   *
+   * <p>If there is at least one range in which both the mandatory and the optional attendees are
+   * free, only those ranges are returned. Otherwise the ranges in which the mandatory attendees are
+   * free are returned.
+   *
+   * <p>Events that take up no time, such as reminders, don't make anyone busy, and in particular
+   * don't split a free range in two.
+   */
+  Collection<TimeRange> query(Collection<Event> events, MeetingRequest request);
+}
@@ -0,0 +1,107 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registry of the available {@link AvailabilityEngine}s. Engines can be looked up by name (e.g.
+ * from a request parameter) or picked automatically from the size of the query.
+ */
+public final class AvailabilityEngines {
+  public static final String LIST = "list";
+  public static final String SWEEP = "sweep";
+  public static final String BITMAP = "bitmap";
+  public static final String INDEXED = "indexed";
+  public static final String ADAPTIVE = "adaptive";
+
+  // Calendars up to this size are cheap for every engine, so keep using the original one.
+  static final int SMALL_CALENDAR = 32;
+
+  // From this size on, sorting the events costs more than marking them in a bitmap.
+  static final int LARGE_CALENDAR = 4096;
+
+  // Queries for at most this many people only touch a small part of a large calendar.
+  static final int FEW_ATTENDEES = 8;
+
+  private static final AvailabilityEngine LIST_ENGINE = new FindMeetingQuery();
+  private static final AvailabilityEngine SWEEP_ENGINE = new SweepLineEngine();
+  private static final AvailabilityEngine BITMAP_ENGINE = new BitmapEngine();
+  private static final AvailabilityEngine INDEXED_ENGINE = new IndexedEngine();
+  private static final AvailabilityEngine ADAPTIVE_ENGINE = new AvailabilityEngine() {
+    @Override
+    public Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
+      int attendeeCount = request.getAttendees().size() + request.getOptionalAttendees().size();
+      return select(events.size(), attendeeCount).query(events, request);
+    }
+  };
+
+  private static final Map<String, AvailabilityEngine> ENGINES = new LinkedHashMap<>();
+
+  static {
+    ENGINES.put(LIST, LIST_ENGINE);
+    ENGINES.put(SWEEP, SWEEP_ENGINE);
+    ENGINES.put(BITMAP, BITMAP_ENGINE);
+    ENGINES.put(INDEXED, INDEXED_ENGINE);
+    ENGINES.put(ADAPTIVE, ADAPTIVE_ENGINE);
+  }
+
+  private AvailabilityEngines() {
+    // Disallow instances.
+  }
+
+  /**
+   * Returns the shared engine registered under {@code name}.
+   *
+   * @throws IllegalArgumentException if there is no engine with that name.
+   */
+  public static AvailabilityEngine forName(String name) {
+    AvailabilityEngine engine = ENGINES.get(name);
+    if (engine == null) {
+      throw new IllegalArgumentException("Unknown engine: " + name + ". Use one of " + names());
+    }
+    return engine;
+  }
+
+  /** Returns the names of all registered engines, in a stable order. */
+  public static Collection<String> names() {
+    return Collections.unmodifiableSet(ENGINES.keySet());
+  }
+
+  /** Returns the engine that picks the engine to use from the size of every query. */
+  public static AvailabilityEngine adaptive() {
+    return ADAPTIVE_ENGINE;
+  }
+
+  /**
+   * Returns the engine expected to answer fastest for a calendar of {@code eventCount} events
+   * queried for {@code attendeeCount} people.
+   */
+  public static AvailabilityEngine select(int eventCount, int attendeeCount) {
+    if (eventCount <= SMALL_CALENDAR) {
+      return LIST_ENGINE;
+    }
+    if (eventCount >= LARGE_CALENDAR && attendeeCount <= FEW_ATTENDEES) {
+      return INDEXED_ENGINE;
+    }
+    if (eventCount >= LARGE_CALENDAR) {
+      return BITMAP_ENGINE;
+    }
+    return SWEEP_ENGINE;
+  }
+}
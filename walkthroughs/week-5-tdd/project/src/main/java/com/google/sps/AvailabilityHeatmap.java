@@ -0,0 +1,117 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * How many of a group of people are free in each fixed-size bucket of the day, for audiences too
+ * big for "is everyone free?" to be a useful question. Someone counts as free in a bucket if none
+ * of their busy times overlaps any part of it.
+ *
+ * <p>The counts come from a difference array: each busy range adds one at its first bucket and
+ * takes one away after its last, so the cost is one pass over the busy ranges plus one over the
+ * buckets, whatever the size of the group.
+ */
+public final class AvailabilityHeatmap {
+  private final int bucketMinutes;
+  private final int attendeeCount;
+  private final int[] freeCounts;
+
+  private AvailabilityHeatmap(int bucketMinutes, int attendeeCount, int[] freeCounts) {
+    this.bucketMinutes = bucketMinutes;
+    this.attendeeCount = attendeeCount;
+    this.freeCounts = freeCounts;
+  }
+
+  /**
+   * Counts who among {@code attendees} is free in each bucket of {@code bucketMinutes}. The last
+   * bucket is shorter if {@code bucketMinutes} doesn't divide the day.
+   *
+   * @throws IllegalArgumentException if {@code bucketMinutes} is not between 1 and a whole day.
+   */
+  public static AvailabilityHeatmap compute(
+      BusyIndex index, Collection<String> attendees, int bucketMinutes) {
+    if (bucketMinutes <= 0 || bucketMinutes > TimeRange.WHOLE_DAY.duration()) {
+      throw new IllegalArgumentException("Bucket must be 1 to "
+          + TimeRange.WHOLE_DAY.duration() + " minutes, not " + bucketMinutes);
+    }
+    int bucketCount = (TimeRange.WHOLE_DAY.duration() + bucketMinutes - 1) / bucketMinutes;
+    Set<String> distinct = new LinkedHashSet<>(attendees);
+
+    // busyChanges[b] is how many more people are busy in bucket b than in bucket b - 1.
+    int[] busyChanges = new int[bucketCount + 1];
+    for (String attendee : distinct) {
+      // The index has already merged overlapping ranges, but two ranges can still end and start
+      // in the same bucket. Remembering the last bucket marked keeps the person from being
+      // counted twice there.
+      int lastMarked = -1;
+      List<TimeRange> busyTimes = index.busyTimes(attendee);
+      for (TimeRange busy : busyTimes) {
+        // Only the part of the range within the day has a bucket to count in.
+        int start = Math.max(busy.start(), TimeRange.WHOLE_DAY.start());
+        int end = Math.min(busy.end(), TimeRange.WHOLE_DAY.end());
+        if (start >= end) {
+          continue;
+        }
+        int first = Math.max(start / bucketMinutes, lastMarked + 1);
+        int last = (end - 1) / bucketMinutes;
+        if (first <= last) {
+          busyChanges[first]++;
+          busyChanges[last + 1]--;
+          lastMarked = last;
+        }
+      }
+    }
+
+    int[] freeCounts = new int[bucketCount];
+    int busy = 0;
+    for (int bucket = 0; bucket < bucketCount; bucket++) {
+      busy += busyChanges[bucket];
+      freeCounts[bucket] = distinct.size() - busy;
+    }
+    return new AvailabilityHeatmap(bucketMinutes, distinct.size(), freeCounts);
+  }
+
+  /** Returns the length of each bucket, in minutes. */
+  public int getBucketMinutes() {
+    return bucketMinutes;
+  }
+
+  /** Returns the number of distinct people counted. */
+  public int getAttendeeCount() {
+    return attendeeCount;
+  }
+
+  /** Returns the number of buckets in the day. */
+  public int getBucketCount() {
+    return freeCounts.length;
+  }
+
+  /** Returns the time covered by bucket {@code bucket}. */
+  public TimeRange getBucket(int bucket) {
+    int start = bucket * bucketMinutes;
+    return TimeRange.fromStartEnd(
+        start, Math.min(start + bucketMinutes, TimeRange.WHOLE_DAY.end()), false);
+  }
+
+  /** Returns how many people are free for the whole of bucket {@code bucket}. */
+  public int getFreeCount(int bucket) {
+    return freeCounts[bucket];
+  }
+}
@@ -0,0 +1,117 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sequence of meetings that must take place in order, such as an interview loop. Each meeting
+ * must start after the previous one has ended, and at most {@code maxGapMinutes} later.
+ */
+public final class BatchRequest {
+  private static final int DEFAULT_MAX_SCHEDULES = 10;
+  private static final long DEFAULT_BUDGET_MILLIS = 200;
+
+  // The meetings, in the order they must take place.
+  private final List<MeetingRequest> meetings = new ArrayList<>();
+
+  // The longest allowed gap between meeting i and meeting i + 1, in minutes. Empty means that
+  // every meeting must start right when the previous one ends.
+  private final List<Integer> maxGapMinutes = new ArrayList<>();
+
+  // Stop searching once this many schedules have been found.
+  private int maxSchedules = DEFAULT_MAX_SCHEDULES;
+
+  // Stop searching after this long, returning what has been found so far.
+  private long budgetMillis = DEFAULT_BUDGET_MILLIS;
+
+  // Used by Gson, so that the defaults above apply to anything the JSON leaves out.
+  private BatchRequest() {}
+
+  /**
+   * Creates a request for {@code meetings} in the given order.
+   *
+   * @param maxGapMinutes Either empty for back-to-back meetings, or one entry for each pair of
+   *     consecutive meetings.
+   */
+  public BatchRequest(List<MeetingRequest> meetings, List<Integer> maxGapMinutes) {
+    this.meetings.addAll(meetings);
+    this.maxGapMinutes.addAll(maxGapMinutes);
+  }
+
+  /** Returns a read-only list of the meetings, in order. */
+  public List<MeetingRequest> getMeetings() {
+    return Collections.unmodifiableList(meetings);
+  }
+
+  /**
+   * Returns the longest allowed gap in minutes between meeting {@code index} and the one after it.
+   *
+   * @throws IllegalArgumentException if gaps were given, but not one for each pair of meetings.
+   */
+  public int getMaxGapMinutes(int index) {
+    validate();
+    return maxGapMinutes.isEmpty() ? 0 : maxGapMinutes.get(index);
+  }
+
+  /**
+   * Checks that the gaps match the meetings, so that a malformed request is turned down before
+   * any searching rather than only once the search gets as far as a second meeting.
+   *
+   * @throws IllegalArgumentException if any meeting is missing, if gaps were given but not one for
+   *     each pair of meetings, or if any gap is negative.
+   */
+  public void validate() {
+    for (MeetingRequest meeting : meetings) {
+      if (meeting == null) {
+        throw new IllegalArgumentException("Meetings must not be null.");
+      }
+    }
+    if (maxGapMinutes.isEmpty()) {
+      return;
+    }
+    if (maxGapMinutes.size() != meetings.size() - 1) {
+      throw new IllegalArgumentException("Expected " + (meetings.size() - 1) + " gaps but got "
+          + maxGapMinutes.size() + ".");
+    }
+    for (Integer gap : maxGapMinutes) {
+      if (gap == null || gap < 0) {
+        throw new IllegalArgumentException("Gaps must be at least 0 minutes, not " + gap + ".");
+      }
+    }
+  }
+
+  /** Returns how many schedules to find at most, as asked for; see {@link BatchScheduler}. */
+  public int getMaxSchedules() {
+    return maxSchedules;
+  }
+
+  /** Sets how many schedules to find at most. */
+  public void setMaxSchedules(int maxSchedules) {
+    this.maxSchedules = maxSchedules;
+  }
+
+  /** Returns how long the search may take in milliseconds, as asked for. */
+  public long getBudgetMillis() {
+    return budgetMillis;
+  }
+
+  /** Sets how long the search may take, in milliseconds. */
+  public void setBudgetMillis(long budgetMillis) {
+    this.budgetMillis = budgetMillis;
+  }
+}
@@ -0,0 +1,43 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** The schedules found for a {@link BatchRequest}. */
+public final class BatchResult {
+  // Each schedule has one range per meeting, in the order of the request.
+  private final List<List<TimeRange>> schedules;
+
+  // Whether the search ran out of time. If so there may be schedules it didn't get to.
+  private final boolean timedOut;
+
+  public BatchResult(List<List<TimeRange>> schedules, boolean timedOut) {
+    this.schedules = new ArrayList<>(schedules);
+    this.timedOut = timedOut;
+  }
+
+  /** Returns a read-only list of the schedules found, earliest first. */
+  public List<List<TimeRange>> getSchedules() {
+    return Collections.unmodifiableList(schedules);
+  }
+
+  /** Returns true if the time budget ran out before the search was done. */
+  public boolean isTimedOut() {
+    return timedOut;
+  }
+}
@@ -0,0 +1,195 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Places a sequence of meetings (a {@link BatchRequest}) in the day. The search tries start times
+ * for each meeting in order, backtracking when the next meeting cannot fit, and prunes:
+ *
+ * <ul>
+ *   <li>any start at which the remaining meetings could not fit before the end of the day;
+ *   <li>any start outside the free time of the meeting's attendees, found through the shared
+ *       {@link BusyIndex} rather than by scanning the calendar for each try.
+ * </ul>
+ *
+ * <p>Only mandatory attendees are taken into account. Whatever the request asks for, a search
+ * finds at most {@link #MAX_SCHEDULES} schedules and runs for at most {@link #MAX_BUDGET_MILLIS},
+ * since it ties up the thread serving the request.
+ */
+public final class BatchScheduler {
+  // First meetings, and meetings that may start some time after the previous one, are tried at
+  // every multiple of this many minutes (as well as right at the start of each free range).
+  private static final int STEP_MINUTES = 5;
+
+  /** The most schedules one search will find. */
+  public static final int MAX_SCHEDULES = 100;
+
+  /** The longest one search will run for, in milliseconds. */
+  public static final long MAX_BUDGET_MILLIS = 1000;
+
+  private final BusyIndex index;
+
+  public BatchScheduler(BusyIndex index) {
+    this.index = index;
+  }
+
+  /** Finds schedules for {@code request}, earliest first, within its time budget. */
+  public BatchResult schedule(BatchRequest request) {
+    request.validate();
+    List<MeetingRequest> meetings = request.getMeetings();
+    int count = meetings.size();
+    if (count == 0) {
+      return new BatchResult(Collections.emptyList(), false);
+    }
+
+    Search search = new Search(request);
+    for (int i = 0; i < count; i++) {
+      MeetingRequest meeting = meetings.get(i);
+      // Anything longer than a day can't fit, and clamping keeps the sums below from overflowing.
+      search.durations[i] =
+          (int) Math.min(meeting.getDuration(), TimeRange.WHOLE_DAY.duration() + 1);
+      search.free.add(Intervals.freeGaps(index.busyTimes(meeting.getAttendees()), 0));
+    }
+    for (int i = count - 1; i >= 0; i--) {
+      search.remainingMinutes[i] = search.durations[i] + search.remainingMinutes[i + 1];
+    }
+
+    search.placeFirst();
+    return new BatchResult(search.schedules, search.outOfTime);
+  }
+
+  /** State of one search. */
+  private static final class Search {
+    final BatchRequest request;
+    final int maxSchedules;
+    final long deadline;
+    final int[] durations;
+    // remainingMinutes[i] is the total length of meetings i and onwards.
+    final int[] remainingMinutes;
+    final List<List<TimeRange>> free = new ArrayList<>();
+    final int[] starts;
+    final List<List<TimeRange>> schedules = new ArrayList<>();
+    boolean outOfTime;
+
+    Search(BatchRequest request) {
+      int count = request.getMeetings().size();
+      this.request = request;
+      this.maxSchedules = Math.max(0, Math.min(request.getMaxSchedules(), MAX_SCHEDULES));
+      // With the budget clamped, the deadline can't overflow, and comparing it by subtraction in
+      // done() stays right even if nanoTime wraps around.
+      long budgetMillis = Math.max(0, Math.min(request.getBudgetMillis(), MAX_BUDGET_MILLIS));
+      this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+      this.durations = new int[count];
+      this.remainingMinutes = new int[count + 1];
+      this.starts = new int[count];
+    }
+
+    void placeFirst() {
+      for (TimeRange gap : free.get(0)) {
+        for (int start = gap.start(); start + durations[0] <= gap.end(); start = nextStep(start)) {
+          if (!place(0, start)) {
+            return;
+          }
+        }
+      }
+    }
+
+    /** Tries meeting {@code i} at {@code start}. Returns false once the search should stop. */
+    private boolean place(int i, int start) {
+      if (done()) {
+        return false;
+      }
+      if (start + remainingMinutes[i] > TimeRange.WHOLE_DAY.end() || !fits(i, start)) {
+        return true;
+      }
+
+      starts[i] = start;
+      if (i == durations.length - 1) {
+        List<TimeRange> schedule = new ArrayList<>();
+        for (int j = 0; j < durations.length; j++) {
+          schedule.add(TimeRange.fromStartDuration(starts[j], durations[j]));
+        }
+        schedules.add(Collections.unmodifiableList(schedule));
+        return !done();
+      }
+
+      int earliest = start + durations[i];
+      // Clamped to a day so that a huge gap can't overflow.
+      int latest =
+          earliest + Math.min(request.getMaxGapMinutes(i), TimeRange.WHOLE_DAY.duration());
+      // Start times on the grid, and the start of each of the next meeting's free ranges, in
+      // order. The range starts are what let a meeting fit right after a busy time that ends off
+      // the grid.
+      List<TimeRange> gaps = free.get(i + 1);
+      int nextGap = lastGapStartingBy(gaps, earliest) + 1;
+      for (int next = earliest; next <= latest; ) {
+        if (!place(i + 1, next)) {
+          return false;
+        }
+        while (nextGap < gaps.size() && gaps.get(nextGap).start() <= next) {
+          nextGap++;
+        }
+        next = nextStep(next);
+        if (nextGap < gaps.size() && gaps.get(nextGap).start() < next) {
+          next = gaps.get(nextGap).start();
+        }
+      }
+      return true;
+    }
+
+    /** Returns true if meeting {@code i} fits within one free range when it starts at start. */
+    private boolean fits(int i, int start) {
+      List<TimeRange> gaps = free.get(i);
+      int found = lastGapStartingBy(gaps, start);
+      return found >= 0 && start + durations[i] <= gaps.get(found).end();
+    }
+
+    /** Returns the index of the last of {@code gaps} starting at or before minute, or -1. */
+    private static int lastGapStartingBy(List<TimeRange> gaps, int minute) {
+      int low = 0;
+      int high = gaps.size() - 1;
+      int found = -1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        if (gaps.get(middle).start() <= minute) {
+          found = middle;
+          low = middle + 1;
+        } else {
+          high = middle - 1;
+        }
+      }
+      return found;
+    }
+
+    private boolean done() {
+      if (schedules.size() >= maxSchedules) {
+        return true;
+      }
+      if (System.nanoTime() - deadline > 0) {
+        outOfTime = true;
+      }
+      return outOfTime;
+    }
+
+    private static int nextStep(int minute) {
+      return (minute / STEP_MINUTES + 1) * STEP_MINUTES;
+    }
+  }
+}
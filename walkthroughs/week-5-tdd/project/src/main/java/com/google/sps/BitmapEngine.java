@@ -0,0 +1,52 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Finds free time by marking every busy minute of the day in a bitmap. Needs no sorting, so it
+ * does well on large, dense calendars: the cost is O(E) plus a scan over the 23 words of the day.
+ */
+public final class BitmapEngine extends BusyIntervalEngine {
+  private static final int MINUTES_PER_DAY = TimeRange.WHOLE_DAY.duration();
+
+  @Override
+  protected List<TimeRange> freeTimes(
+      Collection<Event> events, Collection<String> attendees, long duration) {
+    BitSet busy = new BitSet(MINUTES_PER_DAY);
+    for (Event event : events) {
+      if (Intervals.isBusy(event, attendees)) {
+        TimeRange when = event.getWhen();
+        busy.set(Math.max(when.start(), 0), Math.min(when.end(), MINUTES_PER_DAY));
+      }
+    }
+
+    List<TimeRange> gaps = new ArrayList<>();
+    int free = busy.nextClearBit(0);
+    while (free < MINUTES_PER_DAY) {
+      int nextBusy = busy.nextSetBit(free);
+      if (nextBusy < 0) {
+        nextBusy = MINUTES_PER_DAY;
+      }
+      Intervals.addGap(gaps, free, nextBusy, duration);
+      free = busy.nextClearBit(nextBusy);
+    }
+    return gaps;
+  }
+}
@@ -0,0 +1,133 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index from each attendee to the coalesced list of times they are busy. Building the index costs
+ * one pass over the events; afterwards looking up a group of people only touches their own events.
+ * Instances are read-only once built.
+ */
+public final class BusyIndex {
+  private final Map<String, List<TimeRange>> busyTimes;
+
+  private BusyIndex(Map<String, List<TimeRange>> busyTimes) {
+    this.busyTimes = busyTimes;
+  }
+
+  /** Builds an index over {@code events}. */
+  public static BusyIndex of(Collection<Event> events) {
+    Builder builder = new Builder();
+    for (Event event : events) {
+      builder.add(event);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Collects events one at a time, for callers that produce them as a stream and don't want to
+   * go over them again.
+   */
+  public static final class Builder {
+    // A list is coalesced again once it has grown to this many ranges, or to twice the size it
+    // had after the last time if that is more. An attendee's coalesced list can't outgrow the day,
+    // so the builder's memory is bounded by the people and the day rather than by how many events
+    // are added, and each range is sorted only O(log n) times over.
+    private static final int MIN_COALESCE_SIZE = 64;
+
+    private Map<String, PendingTimes> busyTimes = new HashMap<>();
+
+    /** Adds the times {@code event} keeps its attendees busy. */
+    public Builder add(Event event) {
+      for (String attendee : event.getAttendees()) {
+        add(attendee, event.getWhen());
+      }
+      return this;
+    }
+
+    /** Adds a time {@code attendee} is busy. */
+    public Builder add(String attendee, TimeRange busy) {
+      if (busy.duration() > 0) {
+        busyTimes.computeIfAbsent(attendee, key -> new PendingTimes()).add(busy);
+      }
+      return this;
+    }
+
+    /** Returns the index of everything added so far. The builder can't be used afterwards. */
+    public BusyIndex build() {
+      Map<String, List<TimeRange>> coalesced = new HashMap<>();
+      for (Map.Entry<String, PendingTimes> entry : busyTimes.entrySet()) {
+        coalesced.put(entry.getKey(),
+            Collections.unmodifiableList(Intervals.coalesce(entry.getValue().times)));
+      }
+      busyTimes = null;
+      return new BusyIndex(coalesced);
+    }
+
+    /** Returns how many ranges the builder is holding on to, for tests. */
+    int pendingRanges() {
+      int count = 0;
+      for (PendingTimes pending : busyTimes.values()) {
+        count += pending.times.size();
+      }
+      return count;
+    }
+  }
+
+  /** One attendee's busy times, coalesced now and then as they are added. */
+  private static final class PendingTimes {
+    List<TimeRange> times = new ArrayList<>();
+    int coalesceAt = Builder.MIN_COALESCE_SIZE;
+
+    void add(TimeRange busy) {
+      times.add(busy);
+      if (times.size() >= coalesceAt) {
+        times = Intervals.coalesce(times);
+        coalesceAt = Math.max(Builder.MIN_COALESCE_SIZE, 2 * times.size());
+      }
+    }
+  }
+
+  /**
+   * Returns a read-only list, sorted by start, of the non-overlapping times {@code attendee} is
+   * busy. The list is empty for people the index does not know about.
+   */
+  public List<TimeRange> busyTimes(String attendee) {
+    return busyTimes.getOrDefault(attendee, Collections.emptyList());
+  }
+
+  /**
+   * Returns the coalesced times, sorted by start, in which at least one of {@code attendees} is
+   * busy.
+   */
+  public List<TimeRange> busyTimes(Collection<String> attendees) {
+    List<TimeRange> times = new ArrayList<>();
+    for (String attendee : attendees) {
+      times.addAll(busyTimes(attendee));
+    }
+    return Intervals.coalesce(times);
+  }
+
+  /** Returns a read-only view of everyone the index has busy times for. */
+  public Collection<String> attendees() {
+    return Collections.unmodifiableSet(busyTimes.keySet());
+  }
+}
@@ -0,0 +1,56 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Base class for engines that only differ in how they find the free time of a group of people.
+ * The optional attendee rules live here so that every engine applies them the same way.
+ */
+public abstract class BusyIntervalEngine implements AvailabilityEngine {
+  @Override
+  public final Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
+    Collection<String> mandatoryAttendees = request.getAttendees();
+    Collection<String> optionalAttendees = request.getOptionalAttendees();
+    long duration = request.getDuration();
+
+    // No meeting attendees: whole day is open
+    if (mandatoryAttendees.isEmpty() && optionalAttendees.isEmpty()) {
+      return duration <= TimeRange.WHOLE_DAY.duration() ? Arrays.asList(TimeRange.WHOLE_DAY)
+                                                          : Arrays.asList();
+    }
+
+    Set<String> everyone = new HashSet<>(mandatoryAttendees);
+    everyone.addAll(optionalAttendees);
+    List<TimeRange> allAvailableTimes = freeTimes(events, everyone, duration);
+    if (!allAvailableTimes.isEmpty() || optionalAttendees.isEmpty()
+        || mandatoryAttendees.isEmpty()) {
+      return allAvailableTimes;
+    }
+    return freeTimes(events, mandatoryAttendees, duration);
+  }
+
+  /**
+   * Returns the ranges, sorted by start, of at least {@code duration} minutes in which none of
+   * {@code attendees} is busy. {@code attendees} is never empty.
+   */
+  protected abstract List<TimeRange> freeTimes(
+      Collection<Event> events, Collection<String> attendees, long duration);
+}
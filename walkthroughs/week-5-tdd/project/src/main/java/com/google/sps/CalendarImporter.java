@@ -0,0 +1,402 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads events from calendar dumps, a line at a time, sharing one {@code String} per attendee name
+ * and feeding a {@link BusyIndex} in the same pass.
+ *
+ * <p>An importer made with {@link #indexOnly} only feeds the index, which keeps its memory bounded
+ * by the number of people and the length of the day however big the dump is. One made with the
+ * constructor also keeps the distinct events, dropping those it has already seen, so that they
+ * can be read back with {@link #getEvents}; its memory grows with the distinct events.
+ *
+ * <p>Two formats are understood:
+ *
+ * <ul>
+ *   <li>CSV with the columns {@code title,start,end,attendees}, where times are {@code HH:MM}
+ *       within the day and attendees are separated by {@code ;}. The title may be quoted, with
+ *       {@code ""} for a quote inside it. A first line starting with {@code title,} is a header.
+ *   <li>iCalendar {@code VEVENT}s, using {@code SUMMARY}, {@code DTSTART}, {@code DTEND} and
+ *       {@code ATTENDEE} (its {@code CN} parameter if there is one, its value otherwise). Only the
+ *       time of day is kept; an event ending on a later day than it starts runs to the end of the
+ *       day, and an all-day event takes the whole day.
+ * </ul>
+ *
+ * <p>Lines that can't be understood are counted and skipped rather than failing the import.
+ * Importers are not thread-safe.
+ */
+public final class CalendarImporter {
+  private static final String CSV_HEADER = "title,";
+
+  // Both null for an index-only importer.
+  private final List<Event> events;
+  private final Set<DistinctEvent> seen;
+  private final Map<String, String> names = new HashMap<>();
+  private final BusyIndex.Builder index = new BusyIndex.Builder();
+  private long duplicates;
+  private long malformed;
+
+  /** Creates an importer that keeps the distinct events as well as indexing them. */
+  public CalendarImporter() {
+    this(true);
+  }
+
+  private CalendarImporter(boolean keepEvents) {
+    this.events = keepEvents ? new ArrayList<>() : null;
+    this.seen = keepEvents ? new HashSet<>() : null;
+  }
+
+  /**
+   * Returns an importer that only feeds the index. Duplicate events make no difference to the
+   * index, so they aren't looked for either.
+   */
+  public static CalendarImporter indexOnly() {
+    return new CalendarImporter(false);
+  }
+
+  /** Imports every event in the CSV read from {@code in}. {@code in} is not closed. */
+  public void importCsv(Reader in) throws IOException {
+    BufferedReader lines = buffered(in);
+    String line = lines.readLine();
+    if (line != null && line.startsWith(CSV_HEADER)) {
+      line = lines.readLine();
+    }
+    for (; line != null; line = lines.readLine()) {
+      if (!line.isEmpty()) {
+        Event event = parseCsv(line);
+        if (event == null) {
+          malformed++;
+        } else {
+          add(event);
+        }
+      }
+    }
+  }
+
+  /**
+   * Imports every {@code VEVENT} in the iCalendar read from {@code in}. {@code in} is not closed.
+   */
+  public void importICalendar(Reader in) throws IOException {
+    BufferedReader lines = buffered(in);
+    VEvent current = null;
+    // A line starting with a space or a tab continues the one before it, so a line is only handled
+    // once the next one has been read.
+    StringBuilder pending = null;
+    for (String line = lines.readLine(); ; line = lines.readLine()) {
+      if (line != null && pending != null && !line.isEmpty()
+          && (line.charAt(0) == ' ' || line.charAt(0) == '\t')) {
+        pending.append(line, 1, line.length());
+        continue;
+      }
+      if (pending != null) {
+        current = handleICalendarLine(pending.toString(), current);
+      }
+      if (line == null) {
+        break;
+      }
+      pending = new StringBuilder(line);
+    }
+    if (current != null) {
+      // The dump ended inside an event.
+      malformed++;
+    }
+  }
+
+  /**
+   * Returns a read-only view of the distinct events imported so far, in the order first seen.
+   *
+   * @throws IllegalStateException if the importer was made with {@link #indexOnly}.
+   */
+  public List<Event> getEvents() {
+    if (events == null) {
+      throw new IllegalStateException("Events aren't kept by an index-only importer.");
+    }
+    return Collections.unmodifiableList(events);
+  }
+
+  /**
+   * Returns how many events were dropped because they had already been imported. Always 0 for an
+   * index-only importer.
+   */
+  public long getDuplicates() {
+    return duplicates;
+  }
+
+  /** Returns how many lines or events were skipped because they couldn't be understood. */
+  public long getMalformed() {
+    return malformed;
+  }
+
+  /**
+   * Returns the index of everything imported. The importer shouldn't be used to import more
+   * afterwards.
+   */
+  public BusyIndex buildIndex() {
+    return index.build();
+  }
+
+  private void add(Event event) {
+    if (events != null) {
+      if (!seen.add(new DistinctEvent(event))) {
+        duplicates++;
+        return;
+      }
+      events.add(event);
+    }
+    index.add(event);
+  }
+
+  private String intern(String name) {
+    String shared = names.putIfAbsent(name, name);
+    return shared == null ? name : shared;
+  }
+
+  private Event parseCsv(String line) {
+    String title;
+    int next;
+    if (line.charAt(0) == '"') {
+      StringBuilder quoted = new StringBuilder();
+      int i = 1;
+      while (true) {
+        int quote = line.indexOf('"', i);
+        if (quote < 0) {
+          return null;
+        }
+        quoted.append(line, i, quote);
+        if (quote + 1 < line.length() && line.charAt(quote + 1) == '"') {
+          quoted.append('"');
+          i = quote + 2;
+        } else {
+          next = quote + 1;
+          break;
+        }
+      }
+      if (next >= line.length() || line.charAt(next) != ',') {
+        return null;
+      }
+      title = quoted.toString();
+      next++;
+    } else {
+      int comma = line.indexOf(',');
+      if (comma < 0) {
+        return null;
+      }
+      title = line.substring(0, comma);
+      next = comma + 1;
+    }
+
+    String[] fields = line.substring(next).split(",", -1);
+    if (fields.length != 3) {
+      return null;
+    }
+    int start = parseClock(fields[0].trim());
+    int end = parseClock(fields[1].trim());
+    if (start < 0 || end < start) {
+      return null;
+    }
+    List<String> attendees = new ArrayList<>();
+    for (String attendee : fields[2].split(";")) {
+      attendee = attendee.trim();
+      if (!attendee.isEmpty()) {
+        attendees.add(intern(attendee));
+      }
+    }
+    return new Event(title, TimeRange.fromStartEnd(start, end, false), attendees);
+  }
+
+  /** Returns the minute of the day for {@code HH:MM}, or -1 if it isn't one. */
+  private static int parseClock(String clock) {
+    int colon = clock.indexOf(':');
+    if (colon < 1) {
+      return -1;
+    }
+    try {
+      int hours = Integer.parseInt(clock.substring(0, colon));
+      int minutes = Integer.parseInt(clock.substring(colon + 1));
+      int minute = hours * 60 + minutes;
+      // 24:00 is allowed, as the end of an event that runs to the end of the day.
+      if (hours < 0 || minutes < 0 || minutes >= 60 || minute > TimeRange.WHOLE_DAY.end()) {
+        return -1;
+      }
+      return minute;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** Handles one unfolded line, returning the event being read afterwards, if any. */
+  private VEvent handleICalendarLine(String line, VEvent current) {
+    if (line.equals("BEGIN:VEVENT")) {
+      if (current != null) {
+        malformed++;
+      }
+      return new VEvent();
+    }
+    if (current == null) {
+      // Calendar properties, time zones and other components don't matter here.
+      return null;
+    }
+    if (line.equals("END:VEVENT")) {
+      Event event = current.toEvent();
+      if (event == null) {
+        malformed++;
+      } else {
+        add(event);
+      }
+      return null;
+    }
+
+    // NAME;PARAM=...;PARAM=...:VALUE. Parameter values may be quoted and contain colons.
+    int colon = -1;
+    boolean quoted = false;
+    for (int i = 0; i < line.length() && colon < 0; i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+      } else if (c == ':' && !quoted) {
+        colon = i;
+      }
+    }
+    if (colon < 0) {
+      return current;
+    }
+    String value = line.substring(colon + 1);
+    String[] nameAndParameters = line.substring(0, colon).split(";");
+    switch (nameAndParameters[0]) {
+      case "SUMMARY":
+        current.summary = value;
+        break;
+      case "DTSTART":
+        current.start = value;
+        break;
+      case "DTEND":
+        current.end = value;
+        break;
+      case "ATTENDEE":
+        String attendee =
+            value.regionMatches(true, 0, "mailto:", 0, 7) ? value.substring(7) : value;
+        for (int i = 1; i < nameAndParameters.length; i++) {
+          if (nameAndParameters[i].startsWith("CN=")) {
+            attendee = unquote(nameAndParameters[i].substring(3));
+          }
+        }
+        if (!attendee.isEmpty()) {
+          current.attendees.add(intern(attendee));
+        }
+        break;
+      default:
+        break;
+    }
+    return current;
+  }
+
+  private static String unquote(String value) {
+    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+      return value.substring(1, value.length() - 1);
+    }
+    return value;
+  }
+
+  private static BufferedReader buffered(Reader in) {
+    return in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+  }
+
+  /** The parts of a {@code VEVENT} read so far. */
+  private static final class VEvent {
+    String summary = "";
+    String start;
+    String end;
+    final List<String> attendees = new ArrayList<>();
+
+    /** Returns the event, or null if its times are missing or can't be understood. */
+    Event toEvent() {
+      if (start == null || start.length() < 8) {
+        return null;
+      }
+      int startMinute = minuteOfDay(start);
+      int endMinute;
+      if (end == null || end.length() < 8) {
+        // Without an end, a date is a whole day and a date-time is an instant.
+        endMinute = start.indexOf('T') < 0 ? TimeRange.WHOLE_DAY.end() : startMinute;
+      } else if (!end.regionMatches(0, start, 0, 8)) {
+        endMinute = TimeRange.WHOLE_DAY.end();
+      } else {
+        endMinute = minuteOfDay(end);
+      }
+      if (startMinute < 0 || endMinute < startMinute) {
+        return null;
+      }
+      return new Event(summary, TimeRange.fromStartEnd(startMinute, endMinute, false), attendees);
+    }
+
+    /** Returns the minute of the day for {@code YYYYMMDD[THHMMSS[Z]]}, or -1. */
+    private static int minuteOfDay(String dateTime) {
+      int t = dateTime.indexOf('T');
+      if (t < 0) {
+        return TimeRange.START_OF_DAY;
+      }
+      if (t != 8 || dateTime.length() < t + 5) {
+        return -1;
+      }
+      try {
+        int hours = Integer.parseInt(dateTime.substring(t + 1, t + 3));
+        int minutes = Integer.parseInt(dateTime.substring(t + 3, t + 5));
+        if (hours < 0 || hours >= 24 || minutes < 0 || minutes >= 60) {
+          return -1;
+        }
+        return TimeRange.getTimeInMinutes(hours, minutes);
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+  }
+
+  /**
+   * Wraps an event for the duplicate check. {@code Event.hashCode} only looks at the title, which
+   * repeats a lot in real calendars ("1:1", "Standup"), so this hashes everything equals compares.
+   */
+  private static final class DistinctEvent {
+    private final Event event;
+    private final int hash;
+
+    DistinctEvent(Event event) {
+      this.event = event;
+      this.hash = 31 * (31 * event.getTitle().hashCode() + event.getWhen().hashCode())
+          + event.getAttendees().hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof DistinctEvent && event.equals(((DistinctEvent) other).event);
+    }
+  }
+}
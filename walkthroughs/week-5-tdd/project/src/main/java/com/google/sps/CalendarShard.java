@@ -0,0 +1,34 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One part of a calendar that has been split by attendee (see {@link ShardedEngine}). A shard may
+ * live in this JVM or on another machine.
+ */
+public interface CalendarShard {
+  /**
+   * Returns the times each of {@code attendees} is busy, as coalesced lists sorted by start.
+   * Attendees who are never busy may be left out.
+   *
+   * @throws IOException if the shard could not be reached.
+   */
+  Map<String, List<TimeRange>> busyTimes(Collection<String> attendees) throws IOException;
+}
@@ -15,8 +15,6 @@
 package com.google.sps;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -26,7 +24,7 @@ import java.util.Set;
 public final class Event {
   private final String title;
   private final TimeRange when;
-  private final Set<String> attendees = new HashSet<>();
+  private final AttendeeSet attendees;
 
   /**
    * Creates a new event.
@@ -50,7 +48,7 @@ public final class Event {
 
     this.title = title;
     this.when = when;
-    this.attendees.addAll(attendees);
+    this.attendees = AttendeeSet.of(attendees);
   }
 
   /**
@@ -71,9 +69,9 @@ public final class Event {
    * Returns a read-only set of required attendees for this event.
    */
   public Set<String> getAttendees() {
-    // Return the attendees as an unmodifiable set so that the caller can't change our
-    // internal data.
-    return Collections.unmodifiableSet(attendees);
+    // The set is immutable, so it can be handed out as it is. This is called for every event in
+    // every query, and must not allocate.
+    return attendees;
   }
 
   @Override
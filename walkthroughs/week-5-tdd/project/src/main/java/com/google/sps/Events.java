@@ -18,6 +18,10 @@ package com.google.sps;
 import java.util.Arrays;
 
 public final class Events {
+  // Identifies the contents of {@code events}. Change it whenever they change, so that answers
+  // computed for the old calendar are not reused.
+  public static final long VERSION = 1;
+
   private static final String PERSON_AMELIA = "Amelia";
   private static final String PERSON_AVA = "Ava";
   private static final String PERSON_EMMA = "Emma";
@@ -18,13 +18,21 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Comparator;
-
-public final class FindMeetingQuery {
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The original list-based {@link AvailabilityEngine}: collects the busy times in lists, coalesces
+ * them and inverts the result.
+ */
+public final class FindMeetingQuery implements AvailabilityEngine {
   public static final int START_OF_DAY_MINUTES = 0;
   public static final int END_OF_DAY_MINUTES = 24 * 60; // for a 24 hour day
 
+  @Override
   public Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
     // Sort Collection by start time
     events.stream().sorted((e1, e2) -> e1.getWhen().start() - e2.getWhen().start());
@@ -41,6 +49,10 @@ public final class FindMeetingQuery {
     List<TimeRange> allEvents = new ArrayList<>();
     List<TimeRange> allRequiredEvents = new ArrayList<>();
     for (Event e : events) {
+      // Events that take up no time don't make anyone busy, as in every other engine
+      if (e.getWhen().duration() == 0) {
+        continue;
+      }
       // If the attendee lists are not disjoint (meaning there is at least one attendee in common), 
       // save this event time
       if (!Collections.disjoint(e.getAttendees(), mandatoryAttendees)) {
@@ -72,6 +84,71 @@ public final class FindMeetingQuery {
         : allAvailableTimes;  
   }
 
+  /**
+   * Returns the earliest time the meeting could take place, following the same rules as {@code
+   * query}: the slot starts where the first range returned by {@code query} starts. The cost is one
+   * pass over the events plus a walk through the day that stops as soon as a long enough gap turns
+   * up.
+   */
+  public Optional<TimeRange> earliestFit(Collection<Event> events, MeetingRequest request) {
+    Collection<String> optionalAttendees = request.getOptionalAttendees();
+    Collection<String> mandatoryAttendees = request.getAttendees();
+    long duration = request.getDuration();
+
+    Set<String> allAttendees = new HashSet<>(mandatoryAttendees);
+    allAttendees.addAll(optionalAttendees);
+    Optional<TimeRange> fit = firstGap(events, allAttendees, duration);
+    if (fit.isPresent() || mandatoryAttendees.isEmpty() || optionalAttendees.isEmpty()) {
+      return fit;
+    }
+    // Nobody but the mandatory attendees can make it, same as in query.
+    return firstGap(events, mandatoryAttendees, duration);
+  }
+
+ /**
+  * firstGap: walks the busy times of the attendees
+  * in start order and returns a slot at the start of the
+  * first gap that is at least duration long. Busy times are
+  * bucketed by start minute in one pass, since the day is
+  * short enough that this beats keeping them in a heap.
+  */
+  private static Optional<TimeRange> firstGap(
+      Collection<Event> events, Collection<String> attendees, long duration) {
+    if (duration > END_OF_DAY_MINUTES) {
+      return Optional.empty();
+    }
+
+    // latestEnd[m] is where the longest busy time starting at minute m ends, or -1 if none does.
+    // Busy times that start after the day can't move the answer, and those that start before it
+    // count as starting at midnight.
+    int[] latestEnd = new int[END_OF_DAY_MINUTES];
+    Arrays.fill(latestEnd, -1);
+    for (Event e : events) {
+      if (Intervals.isBusy(e, attendees)) {
+        TimeRange when = e.getWhen();
+        if (when.start() < END_OF_DAY_MINUTES) {
+          int start = Math.max(when.start(), START_OF_DAY_MINUTES);
+          latestEnd[start] = Math.max(latestEnd[start], when.end());
+        }
+      }
+    }
+
+    int freeFrom = START_OF_DAY_MINUTES;
+    for (int start = START_OF_DAY_MINUTES; start < END_OF_DAY_MINUTES; start++) {
+      if (latestEnd[start] < 0) {
+        continue;
+      }
+      if (start - freeFrom >= duration && start > freeFrom) {
+        return Optional.of(TimeRange.fromStartDuration(freeFrom, (int) duration));
+      }
+      freeFrom = Math.max(freeFrom, latestEnd[start]);
+    }
+    if (END_OF_DAY_MINUTES - freeFrom >= duration && END_OF_DAY_MINUTES > freeFrom) {
+      return Optional.of(TimeRange.fromStartDuration(freeFrom, (int) duration));
+    }
+    return Optional.empty();
+  }
+
  /**
   * invert: takes a list of event time ranges
   * and returns an inverted list with all time
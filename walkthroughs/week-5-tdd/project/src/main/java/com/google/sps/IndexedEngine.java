@@ -0,0 +1,55 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Finds free time through a {@link BusyIndex}, so a query only touches the events of the people
+ * it asks about. The index for the most recently seen calendar is kept and reused for as long as
+ * callers keep passing the same collection instance, which makes this engine a good fit for a
+ * large calendar that is queried many times for a few people each. Callers must not modify a
+ * calendar once they have queried it.
+ */
+public final class IndexedEngine extends BusyIntervalEngine {
+  /** The calendar that {@code index} was built from, paired so both are swapped atomically. */
+  private static final class IndexedCalendar {
+    final Collection<Event> events;
+    final BusyIndex index;
+
+    IndexedCalendar(Collection<Event> events, BusyIndex index) {
+      this.events = events;
+      this.index = index;
+    }
+  }
+
+  private volatile IndexedCalendar current;
+
+  @Override
+  protected List<TimeRange> freeTimes(
+      Collection<Event> events, Collection<String> attendees, long duration) {
+    return Intervals.freeGaps(indexFor(events).busyTimes(attendees), duration);
+  }
+
+  private BusyIndex indexFor(Collection<Event> events) {
+    IndexedCalendar calendar = current;
+    if (calendar == null || calendar.events != events) {
+      calendar = new IndexedCalendar(events, BusyIndex.of(events));
+      current = calendar;
+    }
+    return calendar.index;
+  }
+}
@@ -0,0 +1,84 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/** Helpers for working with lists of busy {@code TimeRange}s that the engines share. */
+final class Intervals {
+  private Intervals() {
+    // Disallow instances.
+  }
+
+  /**
+   * Returns true if at least one person in {@code people} attends {@code event} and the event
+   * actually takes up some time.
+   */
+  static boolean isBusy(Event event, Collection<String> people) {
+    return event.getWhen().duration() > 0 && !Collections.disjoint(event.getAttendees(), people);
+  }
+
+  /**
+   * Sorts {@code times} by start and merges every range that overlaps or touches its neighbour.
+   * Returns a new list; {@code times} is left sorted but otherwise untouched.
+   */
+  static List<TimeRange> coalesce(List<TimeRange> times) {
+    times.sort(TimeRange.ORDER_BY_START);
+
+    List<TimeRange> coalesced = new ArrayList<>();
+    int start = 0;
+    int end = -1;
+    for (TimeRange time : times) {
+      if (time.start() > end) {
+        if (end > start) {
+          coalesced.add(TimeRange.fromStartEnd(start, end, false));
+        }
+        start = time.start();
+        end = time.end();
+      } else if (time.end() > end) {
+        end = time.end();
+      }
+    }
+    if (end > start) {
+      coalesced.add(TimeRange.fromStartEnd(start, end, false));
+    }
+    return coalesced;
+  }
+
+  /**
+   * Returns the gaps of at least {@code duration} minutes that {@code busy} leaves in the day.
+   * {@code busy} must be sorted by start and must not contain overlapping ranges.
+   */
+  static List<TimeRange> freeGaps(List<TimeRange> busy, long duration) {
+    List<TimeRange> gaps = new ArrayList<>();
+    int freeFrom = TimeRange.START_OF_DAY;
+    for (TimeRange range : busy) {
+      addGap(gaps, freeFrom, range.start(), duration);
+      freeFrom = Math.max(freeFrom, range.end());
+    }
+    addGap(gaps, freeFrom, TimeRange.WHOLE_DAY.end(), duration);
+    return gaps;
+  }
+
+  /** Adds {@code [start, end)} to {@code gaps} if it is long enough for the meeting. */
+  static void addGap(List<TimeRange> gaps, int start, int end, long duration) {
+    if (end > start && end - start >= duration) {
+      gaps.add(TimeRange.fromStartEnd(start, end, false));
+    }
+  }
+}
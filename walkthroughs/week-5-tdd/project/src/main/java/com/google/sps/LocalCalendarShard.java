@@ -0,0 +1,41 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A shard held in memory by this JVM, answering from a {@link BusyIndex}. */
+public final class LocalCalendarShard implements CalendarShard {
+  private final BusyIndex index;
+
+  public LocalCalendarShard(BusyIndex index) {
+    this.index = index;
+  }
+
+  @Override
+  public Map<String, List<TimeRange>> busyTimes(Collection<String> attendees) {
+    Map<String, List<TimeRange>> busyTimes = new HashMap<>();
+    for (String attendee : attendees) {
+      List<TimeRange> times = index.busyTimes(attendee);
+      if (!times.isEmpty()) {
+        busyTimes.put(attendee, times);
+      }
+    }
+    return busyTimes;
+  }
+}
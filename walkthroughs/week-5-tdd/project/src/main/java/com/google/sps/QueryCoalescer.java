@@ -0,0 +1,169 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Makes identical meeting requests share one computation. While a request is being answered,
+ * every identical request (same attendees, optional attendees and duration, asked of the same
+ * engine against the same calendar version) waits for that answer instead of starting its own,
+ * and the answer is then kept for a short while for requests that arrive just after.
+ */
+public final class QueryCoalescer {
+  // Once the cache holds this many answers, expired ones are dropped on the next insert.
+  private static final int MAX_CACHED_ANSWERS = 1024;
+
+  private final long ttlNanos;
+  private final LongSupplier nanoClock;
+  private final Map<Key, CompletableFuture<Collection<TimeRange>>> inFlight =
+      new ConcurrentHashMap<>();
+  private final Map<Key, CachedAnswer> answers = new ConcurrentHashMap<>();
+
+  /** Creates a coalescer that keeps answers for {@code ttlMillis} milliseconds. */
+  public QueryCoalescer(long ttlMillis) {
+    this(ttlMillis, System::nanoTime);
+  }
+
+  QueryCoalescer(long ttlMillis, LongSupplier nanoClock) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Returns the answer to {@code request}. If nobody is already computing it, {@code engine} is
+   * run on {@code executor}. The returned collection is read-only and may be shared with other
+   * callers.
+   *
+   * @param calendarVersion Identifies the contents of {@code events}. Must change whenever they do.
+   */
+  public CompletableFuture<Collection<TimeRange>> query(Collection<Event> events,
+      long calendarVersion, MeetingRequest request, AvailabilityEngine engine, Executor executor) {
+    Key key = new Key(request, calendarVersion, engine);
+
+    CachedAnswer cached = answers.get(key);
+    if (cached != null && cached.expiresAt - nanoClock.getAsLong() > 0) {
+      return CompletableFuture.completedFuture(cached.answer);
+    }
+
+    CompletableFuture<Collection<TimeRange>> created = new CompletableFuture<>();
+    CompletableFuture<Collection<TimeRange>> existing = inFlight.putIfAbsent(key, created);
+    if (existing != null) {
+      return existing;
+    }
+
+    try {
+      executor.execute(() -> compute(key, events, request, engine, created));
+    } catch (RuntimeException e) {
+      inFlight.remove(key, created);
+      created.completeExceptionally(e);
+    }
+    return created;
+  }
+
+  private void compute(Key key, Collection<Event> events, MeetingRequest request,
+      AvailabilityEngine engine, CompletableFuture<Collection<TimeRange>> future) {
+    try {
+      Collection<TimeRange> answer =
+          Collections.unmodifiableList(new ArrayList<>(engine.query(events, request)));
+      // Cache before leaving the in-flight map so that no request can slip in between and
+      // compute the same answer again.
+      cache(key, answer);
+      future.complete(answer);
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  private void cache(Key key, Collection<TimeRange> answer) {
+    long now = nanoClock.getAsLong();
+    if (answers.size() >= MAX_CACHED_ANSWERS) {
+      Iterator<CachedAnswer> iterator = answers.values().iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().expiresAt - now <= 0) {
+          iterator.remove();
+        }
+      }
+      if (answers.size() >= MAX_CACHED_ANSWERS) {
+        answers.clear();
+      }
+    }
+    answers.put(key, new CachedAnswer(answer, now + ttlNanos));
+  }
+
+  private static final class CachedAnswer {
+    final Collection<TimeRange> answer;
+    final long expiresAt;
+
+    CachedAnswer(Collection<TimeRange> answer, long expiresAt) {
+      this.answer = answer;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * Everything that can change the answer to a request. The engine is part of it because an
+   * engine may not read {@code events} at all: the sharded one answers from its shards, whose
+   * contents {@code calendarVersion} says nothing about.
+   */
+  private static final class Key {
+    private final Set<String> attendees;
+    private final Set<String> optionalAttendees;
+    private final long duration;
+    private final long calendarVersion;
+    private final AvailabilityEngine engine;
+    private final int hashCode;
+
+    Key(MeetingRequest request, long calendarVersion, AvailabilityEngine engine) {
+      this.attendees = new HashSet<>(request.getAttendees());
+      this.optionalAttendees = new HashSet<>(request.getOptionalAttendees());
+      this.duration = request.getDuration();
+      this.calendarVersion = calendarVersion;
+      this.engine = engine;
+      this.hashCode = 31 * (31 * (31 * (31 * attendees.hashCode() + optionalAttendees.hashCode())
+          + Long.hashCode(duration)) + Long.hashCode(calendarVersion))
+          + System.identityHashCode(engine);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return duration == key.duration && calendarVersion == key.calendarVersion
+          && engine == key.engine && attendees.equals(key.attendees)
+          && optionalAttendees.equals(key.optionalAttendees);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A shard served by another node, which answers {@code GET <url>?attendee=...&attendee=...} with
+ * a JSON object mapping each attendee to their busy times (see {@code ShardServlet}).
+ */
+public final class RemoteCalendarShard implements CalendarShard {
+  private static final Type RESPONSE_TYPE =
+      new TypeToken<Map<String, List<TimeRange>>>() {}.getType();
+
+  private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+  private static final int READ_TIMEOUT_MILLIS = 5000;
+
+  private final String url;
+
+  /** Creates a shard that asks the node at {@code url}, e.g. {@code http://shard-0:8080/shard}. */
+  public RemoteCalendarShard(String url) {
+    this.url = url;
+  }
+
+  @Override
+  public Map<String, List<TimeRange>> busyTimes(Collection<String> attendees) throws IOException {
+    StringBuilder query = new StringBuilder(url);
+    char separator = url.indexOf('?') < 0 ? '?' : '&';
+    for (String attendee : attendees) {
+      query.append(separator).append("attendee=").append(URLEncoder.encode(attendee, "UTF-8"));
+      separator = '&';
+    }
+
+    HttpURLConnection connection = (HttpURLConnection) new URL(query.toString()).openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+    connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+    int status = connection.getResponseCode();
+    if (status != HttpURLConnection.HTTP_OK) {
+      connection.disconnect();
+      throw new IOException("Shard " + url + " answered " + status);
+    }
+    // Reading the body to the end and closing it (rather than disconnecting) lets the connection be
+    // kept alive for the next fan-out.
+    try (Reader in = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+      Map<String, List<TimeRange>> busyTimes = new Gson().fromJson(in, RESPONSE_TYPE);
+      return busyTimes == null ? Collections.emptyMap() : busyTimes;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return url;
+  }
+}
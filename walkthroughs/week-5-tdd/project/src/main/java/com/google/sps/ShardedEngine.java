@@ -0,0 +1,147 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Finds free time in a calendar that has been split by attendee across {@link CalendarShard}s, for
+ * calendars too big for one machine. Each attendee belongs to the shard {@link #shardOf} picks for
+ * them. A query asks every shard that owns one of its attendees for their busy times, all at once,
+ * and merges the answers.
+ *
+ * <p>The calendar lives in the shards, so the {@code events} passed to {@code query} are ignored.
+ */
+public final class ShardedEngine extends BusyIntervalEngine {
+  private final List<CalendarShard> shards;
+  private final Executor executor;
+
+  /**
+   * Creates an engine over {@code shards}, which must be in the order {@link #shardOf} numbers
+   * them. Shards are called on {@code executor}.
+   */
+  public ShardedEngine(List<CalendarShard> shards, Executor executor) {
+    if (shards.isEmpty()) {
+      throw new IllegalArgumentException("shards cannot be empty");
+    }
+    this.shards = new ArrayList<>(shards);
+    this.executor = executor;
+  }
+
+  /** Returns the number of the shard, out of {@code shardCount}, that owns {@code attendee}. */
+  public static int shardOf(String attendee, int shardCount) {
+    return Math.floorMod(attendee.hashCode(), shardCount);
+  }
+
+  /**
+   * Splits {@code events} into {@code shardCount} shards held in this JVM. Each shard only keeps
+   * the busy times of the attendees it owns.
+   */
+  public static List<CalendarShard> partition(Collection<Event> events, int shardCount) {
+    if (shardCount <= 0) {
+      throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+    }
+    List<BusyIndex.Builder> builders = new ArrayList<>();
+    for (int i = 0; i < shardCount; i++) {
+      builders.add(new BusyIndex.Builder());
+    }
+    for (Event event : events) {
+      for (String attendee : event.getAttendees()) {
+        builders.get(shardOf(attendee, shardCount)).add(attendee, event.getWhen());
+      }
+    }
+
+    List<CalendarShard> shards = new ArrayList<>();
+    for (BusyIndex.Builder builder : builders) {
+      shards.add(new LocalCalendarShard(builder.build()));
+    }
+    return shards;
+  }
+
+  /**
+   * Returns shard number {@code shard} out of {@code shardCount} of {@code events}, for a node that
+   * serves just one shard.
+   */
+  public static CalendarShard shard(Collection<Event> events, int shard, int shardCount) {
+    if (shard < 0 || shard >= shardCount) {
+      throw new IllegalArgumentException("No shard " + shard + " out of " + shardCount);
+    }
+    BusyIndex.Builder builder = new BusyIndex.Builder();
+    for (Event event : events) {
+      for (String attendee : event.getAttendees()) {
+        if (shardOf(attendee, shardCount) == shard) {
+          builder.add(attendee, event.getWhen());
+        }
+      }
+    }
+    return new LocalCalendarShard(builder.build());
+  }
+
+  /**
+   * Returns the coalesced times, sorted by start, in which at least one of {@code attendees} is
+   * busy. The future fails if any shard that was needed fails.
+   */
+  public CompletableFuture<List<TimeRange>> busyTimes(Collection<String> attendees) {
+    List<List<String>> owned = new ArrayList<>();
+    for (int i = 0; i < shards.size(); i++) {
+      owned.add(new ArrayList<>());
+    }
+    for (String attendee : attendees) {
+      owned.get(shardOf(attendee, shards.size())).add(attendee);
+    }
+
+    List<CompletableFuture<Map<String, List<TimeRange>>>> answers = new ArrayList<>();
+    for (int i = 0; i < shards.size(); i++) {
+      if (!owned.get(i).isEmpty()) {
+        answers.add(ask(shards.get(i), owned.get(i)));
+      }
+    }
+    return CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+      List<TimeRange> busy = new ArrayList<>();
+      for (CompletableFuture<Map<String, List<TimeRange>>> answer : answers) {
+        for (List<TimeRange> times : answer.join().values()) {
+          busy.addAll(times);
+        }
+      }
+      return Intervals.coalesce(busy);
+    });
+  }
+
+  @Override
+  protected List<TimeRange> freeTimes(
+      Collection<Event> events, Collection<String> attendees, long duration) {
+    return Intervals.freeGaps(busyTimes(attendees).join(), duration);
+  }
+
+  private CompletableFuture<Map<String, List<TimeRange>>> ask(
+      CalendarShard shard, List<String> attendees) {
+    List<String> asked = Collections.unmodifiableList(attendees);
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return shard.busyTimes(asked);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, executor);
+  }
+}
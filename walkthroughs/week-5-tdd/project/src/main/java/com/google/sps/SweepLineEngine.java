@@ -0,0 +1,67 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Finds free time by sweeping over the sorted start and end points of the relevant events while
+ * counting how many of them are in progress. Runs in O(E log E) and only allocates two int arrays.
+ */
+public final class SweepLineEngine extends BusyIntervalEngine {
+  @Override
+  protected List<TimeRange> freeTimes(
+      Collection<Event> events, Collection<String> attendees, long duration) {
+    int[] starts = new int[events.size()];
+    int[] ends = new int[events.size()];
+    int count = 0;
+    for (Event event : events) {
+      if (Intervals.isBusy(event, attendees)) {
+        starts[count] = event.getWhen().start();
+        ends[count] = event.getWhen().end();
+        count++;
+      }
+    }
+    Arrays.sort(starts, 0, count);
+    Arrays.sort(ends, 0, count);
+
+    List<TimeRange> gaps = new ArrayList<>();
+    int freeFrom = TimeRange.START_OF_DAY;
+    int started = 0;
+    int ended = 0;
+    while (started < count) {
+      // Process ends before starts at the same point so that touching events leave no gap.
+      if (ended < started && ends[ended] <= starts[started]) {
+        ended++;
+        if (ended == started) {
+          freeFrom = ends[ended - 1];
+        }
+      } else {
+        if (ended == started) {
+          Intervals.addGap(gaps, freeFrom, starts[started], duration);
+        }
+        started++;
+      }
+    }
+    if (count > 0) {
+      freeFrom = ends[count - 1];
+    }
+    Intervals.addGap(gaps, freeFrom, TimeRange.WHOLE_DAY.end(), duration);
+    return gaps;
+  }
+}
@@ -15,6 +15,7 @@
 package com.google.sps;
 
 import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Class representing a span of time, enforcing properties (e.g. start comes before end) and
@@ -24,7 +25,14 @@ public final class TimeRange {
   public static final int START_OF_DAY = getTimeInMinutes(0, 0);
   public static final int END_OF_DAY = getTimeInMinutes(23, 59);
 
-  public static final TimeRange WHOLE_DAY = new TimeRange(0, 24 * 60);
+  // Most ranges start and end on a 5 minute boundary within the day. There are few enough of
+  // those that the factory methods hand out one shared instance for each instead of allocating.
+  private static final int SLOT_MINUTES = 5;
+  private static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+  private static final AtomicReferenceArray<TimeRange> SHARED_RANGES =
+      new AtomicReferenceArray<>(SLOTS_PER_DAY * (SLOTS_PER_DAY + 1));
+
+  public static final TimeRange WHOLE_DAY = fromStartDuration(0, 24 * 60);
 
   /**
    * A comparator for sorting ranges by their start time in ascending order.
@@ -122,12 +130,13 @@ public final class TimeRange {
 
   @Override
   public boolean equals(Object other) {
-    return other instanceof TimeRange && equals(this, (TimeRange) other);
+    // Shared ranges are usually compared with themselves, so check that first.
+    return this == other || (other instanceof TimeRange && equals(this, (TimeRange) other));
   }
 
   @Override
   public int hashCode() {
-    return Long.hashCode(start) ^ Long.hashCode(duration);
+    return 31 * start + duration;
   }
 
   @Override
@@ -174,13 +183,41 @@ public final class TimeRange {
    * then @{code end} will be in the range.
    */
   public static TimeRange fromStartEnd(int start, int end, boolean inclusive) {
-    return inclusive ? new TimeRange(start, end - start + 1) : new TimeRange(start, end - start);
+    return inclusive ? fromStartDuration(start, end - start + 1)
+                     : fromStartDuration(start, end - start);
   }
 
   /**
    * Create a {@code TimeRange} starting at {@code start} with a duration equal to {@code duration}.
    */
   public static TimeRange fromStartDuration(int start, int duration) {
-    return new TimeRange(start, duration);
+    int slot = sharedSlot(start, duration);
+    if (slot < 0) {
+      return new TimeRange(start, duration);
+    }
+
+    TimeRange shared = SHARED_RANGES.get(slot);
+    if (shared == null) {
+      // If another thread got there first, use its instance so that there is only ever one.
+      SHARED_RANGES.compareAndSet(slot, null, new TimeRange(start, duration));
+      shared = SHARED_RANGES.get(slot);
+    }
+    return shared;
+  }
+
+  /**
+   * Returns where the shared instance for this range is kept, or -1 if it doesn't lie on the
+   * grid of shared ranges or doesn't fit within the day.
+   */
+  private static int sharedSlot(int start, int duration) {
+    if (start < 0 || duration < 0 || start % SLOT_MINUTES != 0 || duration % SLOT_MINUTES != 0) {
+      return -1;
+    }
+    int startSlot = start / SLOT_MINUTES;
+    int durationSlots = duration / SLOT_MINUTES;
+    if (startSlot >= SLOTS_PER_DAY || durationSlots > SLOTS_PER_DAY - startSlot) {
+      return -1;
+    }
+    return startSlot * (SLOTS_PER_DAY + 1) + durationSlots;
   }
 }
@@ -0,0 +1,132 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact binary encoding of a sorted list of non-overlapping {@code TimeRange}s, for clients that
+ * would rather not pay for JSON. The encoding is:
+ *
+ * <pre>
+ *   version   1 byte, currently 1
+ *   count     varint
+ *   count times:
+ *     gap       varint, minutes from the end of the previous range (or the start of the day)
+ *     duration  varint, minutes
+ * </pre>
+ *
+ * <p>Varints are unsigned LEB128: seven bits per byte, least significant group first, with the
+ * high bit set on every byte but the last, and at most five bytes for a value below 2^31. A range
+ * within a day takes two to four bytes.
+ */
+public final class TimeRangeCodec {
+  public static final String CONTENT_TYPE = "application/octet-stream";
+
+  private static final int VERSION = 1;
+
+  private TimeRangeCodec() {
+    // Disallow instances.
+  }
+
+  /**
+   * Writes {@code ranges} to {@code out}. Nothing is buffered or allocated per range, so wrap
+   * {@code out} in a buffer if it is expensive to write to byte by byte.
+   *
+   * @throws IllegalArgumentException if the ranges are not sorted or overlap.
+   */
+  public static void write(Collection<TimeRange> ranges, OutputStream out) throws IOException {
+    out.write(VERSION);
+    writeVarint(ranges.size(), out);
+    int previousEnd = TimeRange.START_OF_DAY;
+    for (TimeRange range : ranges) {
+      int gap = range.start() - previousEnd;
+      if (gap < 0 || range.duration() < 0) {
+        throw new IllegalArgumentException("Ranges must be sorted and must not overlap: " + range);
+      }
+      writeVarint(gap, out);
+      writeVarint(range.duration(), out);
+      previousEnd = range.end();
+    }
+  }
+
+  /**
+   * Reads ranges written by {@link #write}.
+   *
+   * @throws IOException if the input ends early, is not in a known format, or describes a range
+   *     that ends after the day does.
+   */
+  public static List<TimeRange> read(InputStream in) throws IOException {
+    int version = in.read();
+    if (version != VERSION) {
+      throw new IOException("Unknown format version: " + version);
+    }
+    int count = readVarint(in);
+    // Don't trust the count with a big allocation before any range has actually been read.
+    List<TimeRange> ranges = new ArrayList<>(Math.min(count, 64));
+    int previousEnd = TimeRange.START_OF_DAY;
+    for (int i = 0; i < count; i++) {
+      // Both varints are non-negative, so only the end needs checking, in a long so that it
+      // can't overflow.
+      long start = (long) previousEnd + readVarint(in);
+      int duration = readVarint(in);
+      if (start + duration > TimeRange.WHOLE_DAY.end()) {
+        throw new IOException("Range ends after the day: " + start + "+" + duration);
+      }
+      TimeRange range = TimeRange.fromStartDuration((int) start, duration);
+      ranges.add(range);
+      previousEnd = range.end();
+    }
+    return ranges;
+  }
+
+  private static void writeVarint(int value, OutputStream out) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  /** Reads a varint, which must fit in a non-negative int. */
+  private static int readVarint(InputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      int b = in.read();
+      if (b < 0) {
+        throw new EOFException("Input ended inside a varint");
+      }
+      if (shift == 28) {
+        // The fifth byte is the last, and holds bits 28 and up, of which only 28 to 30 fit.
+        if ((b & 0x80) != 0) {
+          throw new IOException("Varint is longer than 5 bytes");
+        }
+        if (b > 0x07) {
+          throw new IOException("Varint does not fit in a non-negative int");
+        }
+      }
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+}
@@ -0,0 +1,68 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.BatchRequest;
+import com.google.sps.BatchResult;
+import com.google.sps.BatchScheduler;
+import com.google.sps.BusyIndex;
+import com.google.sps.Events;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.util.Arrays;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Schedules a sequence of meetings, such as an interview loop, in one request. The body is a JSON
+ * {@link BatchRequest}; the response is a {@link BatchResult}. The request's schedule count and
+ * time budget are capped by {@link BatchScheduler}.
+ */
+@WebServlet(value = "/schedule-batch", asyncSupported = true)
+public class BatchScheduleServlet extends HttpServlet {
+  // The calendar never changes, so one index serves every request.
+  private static final BatchScheduler scheduler =
+      new BatchScheduler(BusyIndex.of(Arrays.asList(Events.events)));
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    RequestExecutors.dispatch(request, response, this::schedule);
+  }
+
+  private void schedule(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    Gson gson = new Gson();
+    BatchRequest batchRequest = gson.fromJson(request.getReader(), BatchRequest.class);
+    if (batchRequest == null) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing batch request.");
+      return;
+    }
+
+    // Turn down malformed requests before spending any time searching.
+    try {
+      batchRequest.validate();
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+
+    BatchResult result = scheduler.schedule(batchRequest);
+
+    response.setContentType("application/json");
+    response.getWriter().println(gson.toJson(result));
+  }
+}
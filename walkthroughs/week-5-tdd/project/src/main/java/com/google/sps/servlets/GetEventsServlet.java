@@ -22,10 +22,15 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-@WebServlet("/get-events")
+@WebServlet(value = "/get-events", asyncSupported = true)
 public class GetEventsServlet extends HttpServlet {
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    RequestExecutors.dispatch(request, response, this::listEvents);
+  }
+
+  private void listEvents(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
     Gson gson = new Gson();
     String jsonResponse = gson.toJson(Events.events);
 
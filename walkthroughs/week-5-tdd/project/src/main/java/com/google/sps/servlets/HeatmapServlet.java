@@ -0,0 +1,74 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.AvailabilityHeatmap;
+import com.google.sps.BusyIndex;
+import com.google.sps.Events;
+import com.google.sps.MeetingRequest;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Counts how many of the people in a meeting request are free in each part of the day. The body
+ * is a JSON {@link MeetingRequest}, whose mandatory and optional attendees are all counted (its
+ * duration is ignored); the {@code bucket} query parameter sets the bucket size in minutes, 15 by
+ * default. The response is an {@link AvailabilityHeatmap}.
+ */
+@WebServlet(value = "/heatmap", asyncSupported = true)
+public class HeatmapServlet extends HttpServlet {
+  private static final int DEFAULT_BUCKET_MINUTES = 15;
+
+  // The calendar never changes, so one index serves every request.
+  private static final BusyIndex index = BusyIndex.of(Arrays.asList(Events.events));
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    RequestExecutors.dispatch(request, response, this::heatmap);
+  }
+
+  private void heatmap(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    Gson gson = new Gson();
+    MeetingRequest meetingRequest = gson.fromJson(request.getReader(), MeetingRequest.class);
+    if (meetingRequest == null) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing meeting request.");
+      return;
+    }
+
+    Collection<String> attendees = new ArrayList<>(meetingRequest.getAttendees());
+    attendees.addAll(meetingRequest.getOptionalAttendees());
+    AvailabilityHeatmap heatmap;
+    try {
+      String bucket = request.getParameter("bucket");
+      heatmap = AvailabilityHeatmap.compute(index, attendees,
+          bucket == null ? DEFAULT_BUCKET_MINUTES : Integer.parseInt(bucket));
+    } catch (IllegalArgumentException e) {
+      // Also covers a bucket that isn't a number.
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+
+    response.setContentType("application/json");
+    response.getWriter().println(gson.toJson(heatmap));
+  }
+}
@@ -14,38 +14,280 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.AvailabilityEngine;
+import com.google.sps.AvailabilityEngines;
+import com.google.sps.CalendarShard;
+import com.google.sps.Event;
 import com.google.sps.Events;
 import com.google.sps.FindMeetingQuery;
 import com.google.sps.MeetingRequest;
+import com.google.sps.QueryCoalescer;
+import com.google.sps.RemoteCalendarShard;
+import com.google.sps.ShardedEngine;
 import com.google.sps.TimeRange;
+import com.google.sps.TimeRangeCodec;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.AsyncContext;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-@WebServlet("/query")
+/**
+ * Answers meeting requests. The engine that does the work can be chosen per request with the
+ * {@code engine} query parameter (e.g. {@code /query?engine=sweep}); otherwise the one named by
+ * the {@code sps.engine} system property is used, which defaults to picking one adaptively.
+ *
+ * <p>Identical requests that arrive together share one computation through a {@link
+ * QueryCoalescer}. The body is read, and the answer worked out, on the executor chosen by {@link
+ * RequestExecutors}; waiting requests are parked with servlet async rather than holding a thread.
+ * A missing or malformed body gets a 400.
+ *
+ * <p>{@code engine=sharded} makes this servlet the coordinator of a calendar split by attendee
+ * (see {@link ShardedEngine}). The shards are the {@link ShardServlet}s listed, comma-separated, in
+ * the {@code sps.shards} system property, or else {@code sps.shards.local} (4 by default) shards
+ * kept in this JVM.
+ *
+ * <p>With {@code mode=earliest} the answer only holds the earliest slot of the requested duration
+ * (see {@link FindMeetingQuery#earliestFit}), or nothing if the meeting doesn't fit. That is
+ * worked out from the local calendar, so it can't be combined with {@code engine=sharded}.
+ *
+ * <p>Answers are JSON unless the {@code Accept} header prefers {@code application/octet-stream}
+ * to JSON, taking q-values into account, in which case they are sent in the compact {@link
+ * TimeRangeCodec} encoding.
+ */
+@WebServlet(value = "/query", asyncSupported = true)
 public class QueryServlet extends HttpServlet {
+  private static final Logger logger = Logger.getLogger(QueryServlet.class.getName());
+
+  // Keep a single instance of the calendar so that engines can reuse what they know about it.
+  private static final Collection<Event> EVENTS =
+      Collections.unmodifiableList(Arrays.asList(Events.events));
+
+  private static final String DEFAULT_ENGINE =
+      System.getProperty("sps.engine", AvailabilityEngines.ADAPTIVE);
+
+  // How long an answer is reused for identical requests.
+  private static final long ANSWER_TTL_MILLIS = Long.getLong("sps.query.ttlMillis", 2000);
+
+  // Value of the {@code mode} parameter for callers that only want the earliest slot.
+  private static final String EARLIEST = "earliest";
+
+  private static final QueryCoalescer coalescer = new QueryCoalescer(ANSWER_TTL_MILLIS);
+
+  // Value of the {@code engine} parameter for the sharded calendar.
+  private static final String SHARDED = "sharded";
+
+  private static final int DEFAULT_LOCAL_SHARDS = 4;
+
+  // Threads, and calls waiting for one, that shard calls may take up at once.
+  private static final int SHARD_THREADS = Integer.getInteger("sps.shards.threads", 32);
+  private static final int SHARD_QUEUE = Integer.getInteger("sps.shards.queue", 1024);
+
+  private static final ShardedEngine shardedEngine = newShardedEngine();
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // Pick the engine before reading the body so that a bad name fails fast.
+    String engineName = request.getParameter("engine");
+    if (engineName == null) {
+      engineName = DEFAULT_ENGINE;
+    }
+    AvailabilityEngine engine;
+    try {
+      engine = SHARDED.equals(engineName) ? shardedEngine : AvailabilityEngines.forName(engineName);
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+
+    boolean earliest = EARLIEST.equals(request.getParameter("mode"));
+    if (earliest && engine == shardedEngine) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "mode=" + EARLIEST + " is not supported with engine=" + SHARDED);
+      return;
+    }
+
+    // Clients that ask for it get the binary encoding instead of JSON.
+    boolean wantsBinary = prefersBinary(request.getHeader("Accept"));
+
+    // Reading the body and working out the answer both happen on the request executor, so that,
+    // unless requests stay on the container's threads, a slow upload or a large calendar doesn't
+    // hold a container thread.
+    AsyncContext asyncContext = request.startAsync();
+    asyncContext.setTimeout(0);
+    AvailabilityEngine chosenEngine = engine;
+    try {
+      RequestExecutors.executor().execute(() ->
+          answer(request, response, asyncContext, chosenEngine, earliest, wantsBinary));
+    } catch (RejectedExecutionException e) {
+      RequestExecutors.sendServerError(response);
+      asyncContext.complete();
+    }
+  }
+
+  /** Reads the meeting request, finds the meeting times and sends them, completing the request. */
+  private void answer(HttpServletRequest request, HttpServletResponse response,
+      AsyncContext asyncContext, AvailabilityEngine engine, boolean earliest, boolean wantsBinary) {
     Gson gson = new Gson();
+    CompletableFuture<Collection<TimeRange>> answerFuture;
+    try {
+      // Convert the JSON to an instance of MeetingRequest.
+      MeetingRequest meetingRequest;
+      try {
+        meetingRequest = gson.fromJson(request.getReader(), MeetingRequest.class);
+      } catch (JsonParseException e) {
+        meetingRequest = null;
+      }
+      if (meetingRequest == null) {
+        response.sendError(
+            HttpServletResponse.SC_BAD_REQUEST, "Missing or malformed meeting request.");
+        asyncContext.complete();
+        return;
+      }
+
+      // Find the possible meeting times, sharing the work with identical requests. Callers that
+      // only want the earliest slot get just that, which is cheap enough not to share.
+      if (earliest) {
+        Optional<TimeRange> fit = new FindMeetingQuery().earliestFit(EVENTS, meetingRequest);
+        answerFuture = CompletableFuture.completedFuture(
+            fit.isPresent() ? Arrays.asList(fit.get()) : Collections.emptyList());
+      } else {
+        answerFuture = coalescer.query(
+            EVENTS, Events.VERSION, meetingRequest, engine, RequestExecutors.executor());
+      }
+    } catch (IOException e) {
+      // The client went away while sending the request.
+      asyncContext.complete();
+      return;
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Query failed", e);
+      RequestExecutors.sendServerError(response);
+      asyncContext.complete();
+      return;
+    }
+
+    answerFuture.whenComplete((answer, error) -> {
+      try {
+        if (error != null) {
+          logger.log(Level.WARNING, "Query failed", error);
+          RequestExecutors.sendServerError(response);
+          return;
+        }
+
+        response.setHeader("Vary", "Accept");
+        if (wantsBinary) {
+          // Stream the compact encoding straight out, without building a JSON string.
+          response.setContentType(TimeRangeCodec.CONTENT_TYPE);
+          OutputStream out = new BufferedOutputStream(response.getOutputStream());
+          TimeRangeCodec.write(answer, out);
+          out.flush();
+          return;
+        }
 
-    // Convert the JSON to an instance of MeetingRequest.
-    MeetingRequest meetingRequest = gson.fromJson(request.getReader(), MeetingRequest.class);
+        // Convert the times to JSON
+        String jsonResponse = gson.toJson(answer);
 
-    // Find the possible meeting times.
-    FindMeetingQuery findMeetingQuery = new FindMeetingQuery();
-    Collection<TimeRange> answer =
-        findMeetingQuery.query(Arrays.asList(Events.events), meetingRequest);
+        // Send the JSON back as the response
+        response.setContentType("application/json");
+        response.getWriter().println(jsonResponse);
+      } catch (IOException e) {
+        // The client went away before the answer was ready.
+      } finally {
+        asyncContext.complete();
+      }
+    });
+  }
+
+  /**
+   * Returns true if {@code accept}, an {@code Accept} header, ranks the binary encoding strictly
+   * above JSON. Each type gets the q-value of the most specific media range matching it, so
+   * {@code application/octet-stream;q=0} turns binary down even next to a wildcard. Ties, and
+   * malformed q-values, go to JSON.
+   */
+  static boolean prefersBinary(String accept) {
+    if (accept == null) {
+      return false;
+    }
+    double binary = quality(accept, TimeRangeCodec.CONTENT_TYPE);
+    return binary > 0 && binary > quality(accept, "application/json");
+  }
+
+  /** Returns the q-value {@code accept} gives {@code type}, or 0 if no range matches it. */
+  private static double quality(String accept, String type) {
+    String subtypeWildcard = type.substring(0, type.indexOf('/')) + "/*";
+    int bestSpecificity = -1;
+    double quality = 0;
+    for (String range : accept.split(",")) {
+      String[] parts = range.split(";");
+      String mediaType = parts[0].trim().toLowerCase();
+      int specificity = mediaType.equals(type) ? 2
+          : mediaType.equals(subtypeWildcard) ? 1
+          : mediaType.equals("*/*") ? 0
+          : -1;
+      if (specificity <= bestSpecificity) {
+        continue;
+      }
+      double q = 1;
+      for (int i = 1; i < parts.length; i++) {
+        String parameter = parts[i].trim();
+        if (parameter.startsWith("q=")) {
+          try {
+            q = Double.parseDouble(parameter.substring(2));
+          } catch (NumberFormatException e) {
+            q = 0;
+          }
+        }
+      }
+      bestSpecificity = specificity;
+      quality = q;
+    }
+    return quality;
+  }
 
-    // Convert the times to JSON
-    String jsonResponse = gson.toJson(answer);
+  private static ShardedEngine newShardedEngine() {
+    List<CalendarShard> shards = new ArrayList<>();
+    String urls = System.getProperty("sps.shards", "");
+    for (String url : urls.split(",")) {
+      if (!url.trim().isEmpty()) {
+        shards.add(new RemoteCalendarShard(url.trim()));
+      }
+    }
+    if (shards.isEmpty()) {
+      shards = ShardedEngine.partition(
+          EVENTS, Integer.getInteger("sps.shards.local", DEFAULT_LOCAL_SHARDS));
+    }
 
-    // Send the JSON back as the response
-    response.setContentType("application/json");
-    response.getWriter().println(jsonResponse);
+    // Shard calls get their own threads. Queries block on them, so sharing the request executor
+    // could leave every request thread waiting for shard calls that have no thread to run on. The
+    // pool and its queue are bounded so that slow shards can't pile up threads without limit;
+    // calls beyond that are turned down, failing their query.
+    AtomicInteger count = new AtomicInteger();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(SHARD_THREADS, SHARD_THREADS, 60,
+        TimeUnit.SECONDS, new ArrayBlockingQueue<>(SHARD_QUEUE), runnable -> {
+          Thread thread = new Thread(runnable, "shard-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return new ShardedEngine(shards, executor);
   }
 }
@@ -0,0 +1,164 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Decides which threads serve the calendar servlets. The mode comes from the {@code sps.executor}
+ * system property:
+ *
+ * <ul>
+ *   <li>{@code container} (the default): requests run on the container's own thread pool.
+ *   <li>{@code platform}: requests are handed off, through servlet async, to a fixed pool of
+ *       {@code sps.executor.threads} platform threads.
+ *   <li>{@code virtual}: requests are handed off to a new virtual thread each, so that blocking
+ *       reads do not tie up a pooled thread. Needs JDK 21 or later; older JDKs fall back to
+ *       {@code platform}.
+ * </ul>
+ */
+public final class RequestExecutors {
+  public static final String CONTAINER = "container";
+  public static final String PLATFORM = "platform";
+  public static final String VIRTUAL = "virtual";
+
+  private static final Logger logger = Logger.getLogger(RequestExecutors.class.getName());
+
+  private static final int DEFAULT_THREADS = 16;
+
+  // Null when requests stay on the container's threads.
+  private static final ExecutorService EXECUTOR = newExecutor(
+      System.getProperty("sps.executor", CONTAINER),
+      Integer.getInteger("sps.executor.threads", DEFAULT_THREADS));
+
+  /** Handles one request. Same contract as {@code HttpServlet.doGet} and friends. */
+  public interface Handler {
+    void handle(HttpServletRequest request, HttpServletResponse response) throws IOException;
+  }
+
+  private RequestExecutors() {
+    // Disallow instances.
+  }
+
+  /**
+   * Runs {@code handler} on the configured executor, or straight away on the calling thread if
+   * requests should stay on the container's threads. The servlet must support async.
+   */
+  public static void dispatch(HttpServletRequest request, HttpServletResponse response,
+      Handler handler) throws IOException {
+    dispatch(EXECUTOR, request, response, handler);
+  }
+
+  /** Same as {@link #dispatch}, on {@code executor}, or on the calling thread if it is null. */
+  static void dispatch(ExecutorService executor, HttpServletRequest request,
+      HttpServletResponse response, Handler handler) throws IOException {
+    if (executor == null) {
+      handler.handle(request, response);
+      return;
+    }
+
+    AsyncContext asyncContext = request.startAsync();
+    // The handler decides when it is done, so don't let the container time it out.
+    asyncContext.setTimeout(0);
+    try {
+      executor.execute(() -> {
+        try {
+          handler.handle(request, response);
+        } catch (IOException | RuntimeException e) {
+          logger.log(Level.WARNING, "Request failed", e);
+          sendServerError(response);
+        } finally {
+          asyncContext.complete();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      sendServerError(response);
+      asyncContext.complete();
+    }
+  }
+
+  /**
+   * Returns the executor that request work should run on. In {@code container} mode this runs
+   * tasks straight away on the calling thread.
+   */
+  public static Executor executor() {
+    return EXECUTOR == null ? Runnable::run : EXECUTOR;
+  }
+
+  /**
+   * Creates the executor for {@code mode}, or returns null for {@link #CONTAINER}. {@code threads}
+   * is the size of the platform thread pool.
+   *
+   * @throws IllegalArgumentException if {@code mode} is not one of the modes above.
+   */
+  static ExecutorService newExecutor(String mode, int threads) {
+    switch (mode) {
+      case CONTAINER:
+        return null;
+      case PLATFORM:
+        return newPlatformExecutor(threads);
+      case VIRTUAL:
+        ExecutorService virtual = newVirtualExecutor();
+        if (virtual != null) {
+          return virtual;
+        }
+        logger.warning("Virtual threads need JDK 21 or later, using platform threads instead.");
+        return newPlatformExecutor(threads);
+      default:
+        throw new IllegalArgumentException("Unknown executor mode: " + mode);
+    }
+  }
+
+  /** Returns an executor that starts a virtual thread per task, or null if the JDK has none. */
+  static ExecutorService newVirtualExecutor() {
+    // Looked up reflectively so that the project still builds for Java 8.
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  private static ExecutorService newPlatformExecutor(int threads) {
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "request-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  static void sendServerError(HttpServletResponse response) {
+    try {
+      if (!response.isCommitted()) {
+        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+      }
+    } catch (IOException | IllegalStateException e) {
+      // The client is gone; there is nobody left to tell.
+    }
+  }
+}
@@ -0,0 +1,57 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.CalendarShard;
+import com.google.sps.Events;
+import com.google.sps.ShardedEngine;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.util.Arrays;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves this node's part of a sharded calendar (see {@link ShardedEngine}) to coordinators,
+ * which reach it through {@code RemoteCalendarShard}. {@code GET /shard?attendee=a&attendee=b}
+ * answers with a JSON object mapping each of those attendees to their busy times.
+ *
+ * <p>Which shard this node serves comes from the {@code sps.shard.index} and {@code
+ * sps.shard.count} system properties; by default a single shard holds everyone.
+ */
+@WebServlet(value = "/shard", asyncSupported = true)
+public class ShardServlet extends HttpServlet {
+  private static final CalendarShard shard = ShardedEngine.shard(Arrays.asList(Events.events),
+      Integer.getInteger("sps.shard.index", 0), Integer.getInteger("sps.shard.count", 1));
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    RequestExecutors.dispatch(request, response, this::busyTimes);
+  }
+
+  private void busyTimes(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String[] attendees = request.getParameterValues("attendee");
+    if (attendees == null) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing attendee.");
+      return;
+    }
+
+    response.setContentType("application/json");
+    response.getWriter().println(new Gson().toJson(shard.busyTimes(Arrays.asList(attendees))));
+  }
+}
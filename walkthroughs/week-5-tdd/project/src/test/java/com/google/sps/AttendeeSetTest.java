@@ -0,0 +1,67 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AttendeeSetTest {
+  @Test
+  public void behavesLikeHashSetAtEverySize() {
+    List<String> names = new ArrayList<>();
+    for (int size = 0; size <= 4 * AttendeeSet.LINEAR_SEARCH_LIMIT; size++) {
+      Set<String> expected = new HashSet<>(names);
+      Set<String> actual = AttendeeSet.of(names);
+
+      Assert.assertEquals(expected, actual);
+      Assert.assertEquals(actual, expected);
+      Assert.assertEquals(expected.hashCode(), actual.hashCode());
+      Assert.assertEquals(expected.size(), actual.size());
+      for (int i = 0; i <= size; i++) {
+        Assert.assertEquals(expected.contains("Person " + i), actual.contains("Person " + i));
+      }
+      Assert.assertFalse(actual.contains(null));
+      Assert.assertFalse(actual.contains(1));
+
+      names.add("Person " + size);
+    }
+  }
+
+  @Test
+  public void dropsDuplicatesKeepingFirstOrder() {
+    Set<String> set = AttendeeSet.of(Arrays.asList("B", "A", "B", "C", "A"));
+
+    Assert.assertEquals(Arrays.asList("B", "A", "C"), new ArrayList<>(set));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void isImmutable() {
+    AttendeeSet.of(Arrays.asList("A")).add("B");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNull() {
+    AttendeeSet.of(Arrays.asList("A", null));
+  }
+}
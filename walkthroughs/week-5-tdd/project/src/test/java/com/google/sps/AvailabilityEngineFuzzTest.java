@@ -0,0 +1,101 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiPredicate;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Checks every engine against {@link BruteForceOracle} on random calendars. The default run is
+ * short enough for every build; for a long soak use e.g.
+ * {@code mvn test -Dtest=AvailabilityEngineFuzzTest -Dfuzz.iterations=1000000}, and pass the
+ * reported {@code -Dfuzz.seed} to reproduce a failure.
+ */
+@RunWith(JUnit4.class)
+public final class AvailabilityEngineFuzzTest {
+  private static final int ITERATIONS = Integer.getInteger("fuzz.iterations", 3000);
+  private static final long SEED = Long.getLong("fuzz.seed", 20200702L);
+
+  private static final int PEOPLE = 6;
+  private static final int MAX_EVENTS = 30;
+  private static final int MAX_EVENT_DURATION = 240;
+
+  private final BruteForceOracle oracle = new BruteForceOracle();
+
+  @Test
+  public void enginesMatchOracle() {
+    CalendarGenerator generator =
+        new CalendarGenerator(SEED, PEOPLE, MAX_EVENTS, MAX_EVENT_DURATION);
+
+    for (int i = 0; i < ITERATIONS; i++) {
+      List<Event> events = generator.events();
+      MeetingRequest request = generator.request();
+
+      for (String name : AvailabilityEngines.names()) {
+        BiPredicate<List<Event>, MeetingRequest> fails =
+            disagreesWithOracle(AvailabilityEngines.forName(name));
+        if (fails.test(events, request)) {
+          Assert.fail("Engine " + name + " disagrees with the oracle (seed " + SEED
+              + ", iteration " + i + "). Smallest failing case: "
+              + CalendarShrinker.shrink(events, request, fails));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void shrinkToSingleEvent() {
+    // An engine that forgets about long events. Any failure comes down to one of those events.
+    AvailabilityEngine broken = new AvailabilityEngine() {
+      @Override
+      public Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
+        List<Event> shortEvents = new ArrayList<>();
+        for (Event event : events) {
+          if (event.getWhen().duration() <= 120) {
+            shortEvents.add(event);
+          }
+        }
+        return new SweepLineEngine().query(shortEvents, request);
+      }
+    };
+    BiPredicate<List<Event>, MeetingRequest> fails = disagreesWithOracle(broken);
+
+    CalendarGenerator generator =
+        new CalendarGenerator(SEED, PEOPLE, MAX_EVENTS, MAX_EVENT_DURATION);
+    List<Event> events;
+    MeetingRequest request;
+    do {
+      events = generator.events(MAX_EVENTS);
+      request = generator.request();
+    } while (!fails.test(events, request));
+
+    CalendarShrinker.Failure failure = CalendarShrinker.shrink(events, request, fails);
+
+    Assert.assertEquals(failure.toString(), 1, failure.events.size());
+    Assert.assertTrue(failure.events.get(0).getWhen().duration() > 120);
+    Assert.assertTrue(fails.test(failure.events, failure.request));
+  }
+
+  private BiPredicate<List<Event>, MeetingRequest> disagreesWithOracle(AvailabilityEngine engine) {
+    return (events, request) -> !new ArrayList<>(oracle.query(events, request))
+                                     .equals(new ArrayList<>(engine.query(events, request)));
+  }
+}
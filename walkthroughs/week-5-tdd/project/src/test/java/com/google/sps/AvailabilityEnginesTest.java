@@ -0,0 +1,95 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AvailabilityEnginesTest {
+  private static final long SEED = 20200701L;
+  private static final int CALENDARS = 2000;
+
+  private static final int PEOPLE = 8;
+  private static final int MAX_EVENTS = 40;
+
+  @Test
+  public void lookUpByName() {
+    for (String name : AvailabilityEngines.names()) {
+      Assert.assertNotNull(AvailabilityEngines.forName(name));
+    }
+    Assert.assertTrue(
+        AvailabilityEngines.forName(AvailabilityEngines.LIST) instanceof FindMeetingQuery);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownName() {
+    AvailabilityEngines.forName("quantum");
+  }
+
+  @Test
+  public void selectBySize() {
+    Assert.assertSame(AvailabilityEngines.forName(AvailabilityEngines.LIST),
+        AvailabilityEngines.select(AvailabilityEngines.SMALL_CALENDAR, 100));
+    Assert.assertSame(AvailabilityEngines.forName(AvailabilityEngines.SWEEP),
+        AvailabilityEngines.select(AvailabilityEngines.SMALL_CALENDAR + 1, 100));
+    Assert.assertSame(AvailabilityEngines.forName(AvailabilityEngines.INDEXED),
+        AvailabilityEngines.select(AvailabilityEngines.LARGE_CALENDAR, 2));
+    Assert.assertSame(AvailabilityEngines.forName(AvailabilityEngines.BITMAP),
+        AvailabilityEngines.select(
+            AvailabilityEngines.LARGE_CALENDAR, AvailabilityEngines.FEW_ATTENDEES + 1));
+  }
+
+  @Test
+  public void zeroLengthEventsDoNotSplitFreeTime() {
+    // A reminder at 10:00 takes up no time, so the whole day stays one free range.
+    List<Event> events = Arrays.asList(
+        new Event("Reminder", TimeRange.fromStartDuration(600, 0), Arrays.asList("Person A")),
+        new Event("Start", TimeRange.fromStartDuration(0, 0), Arrays.asList("Person A")),
+        new Event("End", TimeRange.fromStartDuration(TimeRange.END_OF_DAY + 1, 0),
+            Arrays.asList("Person A")));
+    MeetingRequest request = new MeetingRequest(Arrays.asList("Person A"), 30);
+
+    for (String name : AvailabilityEngines.names()) {
+      Assert.assertEquals("engine " + name, Arrays.asList(TimeRange.WHOLE_DAY),
+          new ArrayList<>(AvailabilityEngines.forName(name).query(events, request)));
+    }
+  }
+
+  @Test
+  public void allEnginesAgreeOnRandomCalendars() {
+    CalendarGenerator generator = new CalendarGenerator(SEED, PEOPLE, MAX_EVENTS, 240);
+    AvailabilityEngine reference = AvailabilityEngines.forName(AvailabilityEngines.LIST);
+
+    for (int i = 0; i < CALENDARS; i++) {
+      List<Event> events = generator.events();
+      MeetingRequest request = generator.request();
+      Collection<TimeRange> expected = reference.query(events, request);
+
+      for (String name : AvailabilityEngines.names()) {
+        Collection<TimeRange> actual = AvailabilityEngines.forName(name).query(events, request);
+        Assert.assertEquals("engine " + name + " on calendar " + i + ": " + events,
+            new ArrayList<>(expected), new ArrayList<>(actual));
+      }
+    }
+  }
+}
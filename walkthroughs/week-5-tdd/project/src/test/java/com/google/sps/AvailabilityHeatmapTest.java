@@ -0,0 +1,122 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AvailabilityHeatmapTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  @Test
+  public void countsFreePeoplePerBucket() {
+    List<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(0, 30, false), Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(20, 50, false), Arrays.asList(PERSON_B)));
+    AvailabilityHeatmap heatmap =
+        AvailabilityHeatmap.compute(BusyIndex.of(events), Arrays.asList(PERSON_A, PERSON_B), 15);
+
+    Assert.assertEquals(96, heatmap.getBucketCount());
+    Assert.assertEquals(2, heatmap.getAttendeeCount());
+    Assert.assertEquals(1, heatmap.getFreeCount(0));
+    Assert.assertEquals(0, heatmap.getFreeCount(1));
+    Assert.assertEquals(1, heatmap.getFreeCount(2));
+    Assert.assertEquals(1, heatmap.getFreeCount(3));
+    Assert.assertEquals(2, heatmap.getFreeCount(4));
+    Assert.assertEquals(TimeRange.fromStartDuration(45, 15), heatmap.getBucket(3));
+  }
+
+  @Test
+  public void rangesSharingABucketCountOnce() {
+    // Two separate meetings for the same person, both touching the 09:00-09:15 bucket.
+    List<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(530, 545, false), Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(550, 560, false), Arrays.asList(PERSON_A)));
+    AvailabilityHeatmap heatmap =
+        AvailabilityHeatmap.compute(BusyIndex.of(events), Arrays.asList(PERSON_A, PERSON_B), 15);
+
+    Assert.assertEquals(1, heatmap.getFreeCount(35));
+    Assert.assertEquals(1, heatmap.getFreeCount(36));
+    Assert.assertEquals(1, heatmap.getFreeCount(37));
+    Assert.assertEquals(2, heatmap.getFreeCount(38));
+  }
+
+  @Test
+  public void lastBucketMayBeShort() {
+    AvailabilityHeatmap heatmap = AvailabilityHeatmap.compute(
+        BusyIndex.of(Collections.emptyList()), Arrays.asList(PERSON_A), 100);
+
+    Assert.assertEquals(15, heatmap.getBucketCount());
+    Assert.assertEquals(TimeRange.fromStartEnd(1400, 1440, false), heatmap.getBucket(14));
+    Assert.assertEquals(1, heatmap.getFreeCount(14));
+  }
+
+  @Test
+  public void rangesRunningPastTheDayAreClamped() {
+    List<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(1435, 10), Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(1450, 10), Arrays.asList(PERSON_B)));
+    AvailabilityHeatmap heatmap =
+        AvailabilityHeatmap.compute(BusyIndex.of(events), Arrays.asList(PERSON_A, PERSON_B), 15);
+
+    Assert.assertEquals(96, heatmap.getBucketCount());
+    Assert.assertEquals(2, heatmap.getFreeCount(94));
+    Assert.assertEquals(1, heatmap.getFreeCount(95));
+  }
+
+  @Test
+  public void matchesCheckingEveryoneInEveryBucket() {
+    CalendarGenerator generator = new CalendarGenerator(20200720L, 300, 2000, 180);
+    List<Event> events = generator.events(2000);
+    List<String> audience = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      audience.add("Person " + i);
+    }
+
+    for (int bucketMinutes : new int[] {1, 7, 15, 60}) {
+      AvailabilityHeatmap heatmap =
+          AvailabilityHeatmap.compute(BusyIndex.of(events), audience, bucketMinutes);
+      for (int bucket = 0; bucket < heatmap.getBucketCount(); bucket++) {
+        TimeRange range = heatmap.getBucket(bucket);
+        Set<String> busy = new HashSet<>();
+        for (Event event : events) {
+          // Events that take up no time don't make anyone busy.
+          if (event.getWhen().duration() > 0 && event.getWhen().overlaps(range)) {
+            busy.addAll(event.getAttendees());
+          }
+        }
+        busy.retainAll(audience);
+        Assert.assertEquals(
+            "bucket " + range, audience.size() - busy.size(), heatmap.getFreeCount(bucket));
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsEmptyBuckets() {
+    AvailabilityHeatmap.compute(BusyIndex.of(Collections.emptyList()), Arrays.asList(PERSON_A), 0);
+  }
+}
@@ -0,0 +1,238 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class BatchSchedulerTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_0930AM = TimeRange.getTimeInMinutes(9, 30);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+  private static final int TIME_1030AM = TimeRange.getTimeInMinutes(10, 30);
+  private static final int TIME_1100AM = TimeRange.getTimeInMinutes(11, 0);
+
+  private static final int DURATION_30_MINUTES = 30;
+  private static final int DURATION_60_MINUTES = 60;
+
+  @Test
+  public void backToBackLoop() {
+    // A is busy until 9:00 and B from 10:00, so the earliest loop of A then B is 9:00 to 10:00.
+    //
+    // Events   : |--A--|      |-----B-----...
+    // Loop     :       |-A-|-B-|
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_B)));
+    List<MeetingRequest> meetings = Arrays.asList(
+        meeting(PERSON_A, DURATION_30_MINUTES), meeting(PERSON_B, DURATION_30_MINUTES));
+    BatchRequest request = new BatchRequest(meetings, Collections.emptyList());
+
+    BatchResult result = new BatchScheduler(BusyIndex.of(events)).schedule(request);
+
+    Assert.assertFalse(result.isTimedOut());
+    Assert.assertEquals(Arrays.asList(Arrays.asList(
+                            TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES),
+                            TimeRange.fromStartDuration(TIME_0930AM, DURATION_30_MINUTES))),
+        result.getSchedules());
+  }
+
+  @Test
+  public void gapLetsLoopWaitForNextInterviewer() {
+    // B is busy right after A's interview, so the loop needs a gap of 30 minutes.
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_1000AM, false),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 3", TimeRange.fromStartEnd(TIME_0930AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 4", TimeRange.fromStartEnd(TIME_1100AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_B)));
+    List<MeetingRequest> meetings = Arrays.asList(
+        meeting(PERSON_A, DURATION_30_MINUTES), meeting(PERSON_B, DURATION_60_MINUTES));
+    BatchScheduler scheduler = new BatchScheduler(BusyIndex.of(events));
+
+    Assert.assertTrue(scheduler.schedule(new BatchRequest(meetings, Arrays.asList(15)))
+                          .getSchedules()
+                          .isEmpty());
+
+    BatchResult result = scheduler.schedule(new BatchRequest(meetings, Arrays.asList(30)));
+    Assert.assertEquals(Arrays.asList(Arrays.asList(
+                            TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES),
+                            TimeRange.fromStartDuration(TIME_1000AM, DURATION_60_MINUTES))),
+        result.getSchedules());
+  }
+
+  @Test
+  public void nextMeetingCanStartWhereABusyTimeEndsOffTheGrid() {
+    // B is only free from 9:33 to 10:03, and A from 9:02, so the only loop with a gap of up to 10
+    // minutes is A at 9:02 and B at 9:33, neither of which is on the 5-minute grid.
+    //
+    // Events   : |--A--|      |--B--|           |--B--...
+    // Loop     :       |-A-|   |-B-|
+    int time0902am = TimeRange.getTimeInMinutes(9, 2);
+    int time0933am = TimeRange.getTimeInMinutes(9, 33);
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, time0902am, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, time0933am, false),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 3",
+            TimeRange.fromStartEnd(time0933am + DURATION_30_MINUTES, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_B)));
+    List<MeetingRequest> meetings = Arrays.asList(
+        meeting(PERSON_A, DURATION_30_MINUTES), meeting(PERSON_B, DURATION_30_MINUTES));
+    BatchRequest request = new BatchRequest(meetings, Arrays.asList(10));
+
+    BatchResult result = new BatchScheduler(BusyIndex.of(events)).schedule(request);
+
+    Assert.assertEquals(Arrays.asList(Arrays.asList(
+                            TimeRange.fromStartDuration(time0902am, DURATION_30_MINUTES),
+                            TimeRange.fromStartDuration(time0933am, DURATION_30_MINUTES))),
+        result.getSchedules());
+  }
+
+  @Test
+  public void everyStartIsTriedOnce() {
+    // B's free range starts on the grid, at 9:35, so it must not be tried twice.
+    int time0935am = TimeRange.getTimeInMinutes(9, 35);
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, time0935am, false),
+            Arrays.asList(PERSON_B)));
+    List<MeetingRequest> meetings = Arrays.asList(
+        meeting(PERSON_A, DURATION_30_MINUTES), meeting(PERSON_B, DURATION_30_MINUTES));
+    BatchRequest request = new BatchRequest(meetings, Arrays.asList(10));
+    request.setMaxSchedules(BatchScheduler.MAX_SCHEDULES);
+
+    List<List<TimeRange>> schedules =
+        new BatchScheduler(BusyIndex.of(events)).schedule(request).getSchedules();
+
+    Assert.assertEquals(schedules.size(), new HashSet<>(schedules).size());
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartDuration(TimeRange.getTimeInMinutes(8, 55), 30),
+            TimeRange.fromStartDuration(time0935am, DURATION_30_MINUTES)),
+        schedules.get(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void missingMeeting() {
+    new BatchRequest(Arrays.asList(meeting(PERSON_A, DURATION_30_MINUTES), null),
+        Collections.emptyList()).validate();
+  }
+
+  @Test
+  public void stopsAtMaxSchedules() {
+    BatchRequest request = new BatchRequest(Arrays.asList(meeting(PERSON_A, DURATION_30_MINUTES),
+        meeting(PERSON_B, DURATION_30_MINUTES), meeting(PERSON_C, DURATION_30_MINUTES)),
+        Arrays.asList(60, 60));
+    request.setMaxSchedules(3);
+
+    BatchResult result =
+        new BatchScheduler(BusyIndex.of(Collections.emptyList())).schedule(request);
+
+    Assert.assertEquals(3, result.getSchedules().size());
+    Assert.assertEquals(TimeRange.fromStartDuration(TimeRange.START_OF_DAY, DURATION_30_MINUTES),
+        result.getSchedules().get(0).get(0));
+  }
+
+  @Test
+  public void stopsWhenOutOfTime() {
+    BatchRequest request = new BatchRequest(Arrays.asList(meeting(PERSON_A, DURATION_30_MINUTES),
+        meeting(PERSON_B, DURATION_30_MINUTES), meeting(PERSON_C, DURATION_30_MINUTES)),
+        Arrays.asList(600, 600));
+    request.setMaxSchedules(Integer.MAX_VALUE);
+    request.setBudgetMillis(0);
+
+    BatchResult result =
+        new BatchScheduler(BusyIndex.of(Collections.emptyList())).schedule(request);
+
+    Assert.assertTrue(result.isTimedOut());
+  }
+
+  @Test
+  public void noScheduleWhenLoopIsLongerThanTheDay() {
+    BatchRequest request = new BatchRequest(
+        Arrays.asList(meeting(PERSON_A, 12 * 60), meeting(PERSON_B, 12 * 60 + 1)),
+        Collections.emptyList());
+
+    BatchResult result =
+        new BatchScheduler(BusyIndex.of(Collections.emptyList())).schedule(request);
+
+    Assert.assertTrue(result.getSchedules().isEmpty());
+    Assert.assertFalse(result.isTimedOut());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void wrongNumberOfGaps() {
+    List<MeetingRequest> meetings = Arrays.asList(
+        meeting(PERSON_A, DURATION_30_MINUTES), meeting(PERSON_B, DURATION_30_MINUTES));
+    BatchRequest request = new BatchRequest(meetings, Arrays.asList(0, 0));
+
+    new BatchScheduler(BusyIndex.of(Collections.emptyList())).schedule(request);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void wrongNumberOfGapsWhenFirstMeetingNeverFits() {
+    // A is busy all day, so the search never reaches the second meeting.
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.WHOLE_DAY, Arrays.asList(PERSON_A)));
+    List<MeetingRequest> meetings = Arrays.asList(
+        meeting(PERSON_A, DURATION_30_MINUTES), meeting(PERSON_B, DURATION_30_MINUTES));
+    BatchRequest request = new BatchRequest(meetings, Arrays.asList(0, 0));
+
+    new BatchScheduler(BusyIndex.of(events)).schedule(request);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeGap() {
+    List<MeetingRequest> meetings = Arrays.asList(
+        meeting(PERSON_A, DURATION_30_MINUTES), meeting(PERSON_B, DURATION_30_MINUTES));
+    new BatchRequest(meetings, Arrays.asList(-1)).validate();
+  }
+
+  @Test
+  public void limitsAreClamped() {
+    BatchRequest request = new BatchRequest(Arrays.asList(meeting(PERSON_A, DURATION_30_MINUTES),
+        meeting(PERSON_B, DURATION_30_MINUTES)), Arrays.asList(Integer.MAX_VALUE));
+    request.setMaxSchedules(Integer.MAX_VALUE);
+    request.setBudgetMillis(Long.MAX_VALUE);
+
+    BatchResult result =
+        new BatchScheduler(BusyIndex.of(Collections.emptyList())).schedule(request);
+
+    Assert.assertEquals(BatchScheduler.MAX_SCHEDULES, result.getSchedules().size());
+    Assert.assertFalse(result.isTimedOut());
+  }
+
+  private static MeetingRequest meeting(String attendee, int duration) {
+    return new MeetingRequest(Arrays.asList(attendee), duration);
+  }
+}
@@ -0,0 +1,75 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reference implementation of {@link AvailabilityEngine} that checks every minute of the day on
+ * its own. It is far too slow for production but simple enough to trust as the expected answer.
+ * Like every engine, it treats events that take up no time as not making anyone busy.
+ */
+final class BruteForceOracle implements AvailabilityEngine {
+  private static final int MINUTES_PER_DAY = TimeRange.WHOLE_DAY.duration();
+
+  @Override
+  public Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
+    Collection<String> mandatory = request.getAttendees();
+    Set<String> everyone = new HashSet<>(mandatory);
+    everyone.addAll(request.getOptionalAttendees());
+
+    List<TimeRange> withOptional = freeTimes(events, everyone, request.getDuration());
+    if (!withOptional.isEmpty() || mandatory.isEmpty() || mandatory.equals(everyone)) {
+      return withOptional;
+    }
+    return freeTimes(events, mandatory, request.getDuration());
+  }
+
+  private static List<TimeRange> freeTimes(
+      Collection<Event> events, Collection<String> people, long duration) {
+    boolean[] busy = new boolean[MINUTES_PER_DAY];
+    for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+      for (Event event : events) {
+        if (event.getWhen().duration() > 0 && event.getWhen().contains(minute)
+            && !Collections.disjoint(event.getAttendees(), people)) {
+          busy[minute] = true;
+          break;
+        }
+      }
+    }
+
+    List<TimeRange> free = new ArrayList<>();
+    int minute = 0;
+    while (minute < MINUTES_PER_DAY) {
+      if (busy[minute]) {
+        minute++;
+        continue;
+      }
+      int start = minute;
+      while (minute < MINUTES_PER_DAY && !busy[minute]) {
+        minute++;
+      }
+      if (minute - start >= duration) {
+        free.add(TimeRange.fromStartEnd(start, minute, false));
+      }
+    }
+    return free;
+  }
+}
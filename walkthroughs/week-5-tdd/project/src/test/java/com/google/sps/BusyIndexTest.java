@@ -0,0 +1,61 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class BusyIndexTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  @Test
+  public void builderMatchesCoalescingOnce() {
+    Random random = new Random(20200801L);
+    BusyIndex.Builder builder = new BusyIndex.Builder();
+    List<TimeRange> all = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      int start = random.nextInt(TimeRange.WHOLE_DAY.end() - 30);
+      TimeRange busy = TimeRange.fromStartDuration(start, 1 + random.nextInt(30));
+      builder.add(PERSON_A, busy);
+      all.add(busy);
+    }
+
+    Assert.assertEquals(Intervals.coalesce(all), builder.build().busyTimes(PERSON_A));
+  }
+
+  @Test
+  public void builderMemoryIsBoundedByTheDay() {
+    BusyIndex.Builder builder = new BusyIndex.Builder();
+    for (int i = 0; i < 1000000; i++) {
+      // One-minute meetings every other minute, so nothing ever merges.
+      int start = (i % (TimeRange.WHOLE_DAY.duration() / 2)) * 2;
+      builder.add(new Event("Event " + i % 10, TimeRange.fromStartDuration(start, 1),
+          Arrays.asList(PERSON_A, PERSON_B)));
+    }
+
+    // 720 distinct ranges each, with room to grow to twice that before coalescing again.
+    Assert.assertTrue(builder.pendingRanges() + " ranges", builder.pendingRanges() <= 2 * 2 * 720);
+    Assert.assertEquals(720, builder.build().busyTimes(PERSON_A).size());
+  }
+}
@@ -0,0 +1,92 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates random calendars and meeting requests for tests. The same seed always produces the
+ * same sequence, so a failure can be reproduced from the seed it was reported with.
+ */
+final class CalendarGenerator {
+  private final Random random;
+  private final int people;
+  private final int maxEvents;
+  private final int maxEventDuration;
+
+  /**
+   * Creates a generator drawing attendees from {@code people} names and making calendars of up to
+   * {@code maxEvents} events of at most {@code maxEventDuration} minutes each.
+   */
+  CalendarGenerator(long seed, int people, int maxEvents, int maxEventDuration) {
+    this.random = new Random(seed);
+    this.people = people;
+    this.maxEvents = maxEvents;
+    this.maxEventDuration = maxEventDuration;
+  }
+
+  /** Returns a calendar of between zero and {@code maxEvents} events. */
+  List<Event> events() {
+    return events(random.nextInt(maxEvents + 1));
+  }
+
+  /**
+   * Returns a calendar of exactly {@code count} events. About one event in ten takes up no time,
+   * some of those right at the start or the end of the day; the rest are at least a minute long.
+   */
+  List<Event> events(int count) {
+    List<Event> events = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      TimeRange when;
+      if (random.nextInt(10) == 0) {
+        int choice = random.nextInt(4);
+        int start = choice == 0 ? TimeRange.START_OF_DAY
+            : choice == 1 ? TimeRange.WHOLE_DAY.end()
+            : random.nextInt(TimeRange.WHOLE_DAY.duration());
+        when = TimeRange.fromStartDuration(start, 0);
+      } else {
+        int start = random.nextInt(TimeRange.WHOLE_DAY.duration());
+        int longest = Math.min(maxEventDuration, TimeRange.WHOLE_DAY.end() - start);
+        when = TimeRange.fromStartDuration(start, 1 + random.nextInt(longest));
+      }
+      events.add(new Event("Event " + i, when, people(1 + random.nextInt(3))));
+    }
+    return events;
+  }
+
+  /**
+   * Returns a request for up to two mandatory and two optional attendees. Durations are mostly
+   * shorter than a day, with the odd one that cannot fit at all.
+   */
+  MeetingRequest request() {
+    int duration = random.nextInt(20) == 0 ? TimeRange.WHOLE_DAY.duration() + random.nextInt(2)
+                                           : 1 + random.nextInt(180);
+    MeetingRequest request = new MeetingRequest(people(random.nextInt(3)), duration);
+    for (String person : people(random.nextInt(3))) {
+      request.addOptionalAttendee(person);
+    }
+    return request;
+  }
+
+  private List<String> people(int count) {
+    List<String> names = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      names.add("Person " + random.nextInt(people));
+    }
+    return names;
+  }
+}
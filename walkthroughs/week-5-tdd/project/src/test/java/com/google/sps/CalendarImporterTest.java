@@ -0,0 +1,234 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CalendarImporterTest {
+  // How many events the large import streams through the importer.
+  private static final int LARGE_IMPORT_EVENTS = Integer.getInteger("import.events", 200000);
+
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  @Test
+  public void csv() throws IOException {
+    CalendarImporter importer = new CalendarImporter();
+    importer.importCsv(new StringReader("title,start,end,attendees\n"
+        + "Standup,09:00,09:15,Person A;Person B\n"
+        + "\"Review, \"\"final\"\"\",13:30,14:00,Person A\n"
+        + "Late,23:00,24:00,Person B\n"));
+
+    Assert.assertEquals(Arrays.asList(
+        new Event("Standup", TimeRange.fromStartEnd(540, 555, false),
+            Arrays.asList(PERSON_A, PERSON_B)),
+        new Event("Review, \"final\"", TimeRange.fromStartEnd(810, 840, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Late", TimeRange.fromStartEnd(1380, 1440, false), Arrays.asList(PERSON_B))),
+        importer.getEvents());
+    Assert.assertEquals(0, importer.getDuplicates());
+    Assert.assertEquals(0, importer.getMalformed());
+  }
+
+  @Test
+  public void csvSkipsDuplicatesAndMalformedLines() throws IOException {
+    CalendarImporter importer = new CalendarImporter();
+    importer.importCsv(new StringReader("Standup,09:00,09:15,Person A\n"
+        + "Standup,09:00,09:15,Person A\n"
+        + "Standup,10:00,09:15,Person A\n"
+        + "Standup,9am,10am,Person A\n"
+        + "\"Unterminated,09:00,09:15,Person A\n"
+        + "Standup,09:00,09:15\n"));
+
+    Assert.assertEquals(1, importer.getEvents().size());
+    Assert.assertEquals(1, importer.getDuplicates());
+    Assert.assertEquals(4, importer.getMalformed());
+  }
+
+  @Test
+  public void iCalendar() throws IOException {
+    CalendarImporter importer = new CalendarImporter();
+    importer.importICalendar(new StringReader("BEGIN:VCALENDAR\r\n"
+        + "VERSION:2.0\r\n"
+        + "BEGIN:VEVENT\r\n"
+        + "SUMMARY:Planning for the next\r\n"
+        + "  quarter\r\n"
+        + "DTSTART:20200701T093000Z\r\n"
+        + "DTEND:20200701T103000Z\r\n"
+        + "ATTENDEE;CN=\"Person A\";ROLE=REQ-PARTICIPANT:mailto:a@example.com\r\n"
+        + "ATTENDEE:mailto:b@example.com\r\n"
+        + "END:VEVENT\r\n"
+        + "BEGIN:VEVENT\r\n"
+        + "SUMMARY:Offsite\r\n"
+        + "DTSTART:20200701T220000\r\n"
+        + "DTEND:20200702T020000\r\n"
+        + "ATTENDEE;CN=Person A:mailto:a@example.com\r\n"
+        + "END:VEVENT\r\n"
+        + "BEGIN:VEVENT\r\n"
+        + "SUMMARY:Holiday\r\n"
+        + "DTSTART;VALUE=DATE:20200703\r\n"
+        + "ATTENDEE;CN=Person B:mailto:b@example.com\r\n"
+        + "END:VEVENT\r\n"
+        + "BEGIN:VEVENT\r\n"
+        + "SUMMARY:No times\r\n"
+        + "END:VEVENT\r\n"
+        + "END:VCALENDAR\r\n"));
+
+    Assert.assertEquals(Arrays.asList(
+        new Event("Planning for the next quarter", TimeRange.fromStartEnd(570, 630, false),
+            Arrays.asList(PERSON_A, "b@example.com")),
+        new Event("Offsite", TimeRange.fromStartEnd(1320, 1440, false), Arrays.asList(PERSON_A)),
+        new Event("Holiday", TimeRange.WHOLE_DAY, Arrays.asList(PERSON_B))),
+        importer.getEvents());
+    Assert.assertEquals(1, importer.getMalformed());
+  }
+
+  @Test
+  public void attendeeNamesAreShared() throws IOException {
+    CalendarImporter importer = new CalendarImporter();
+    importer.importCsv(new StringReader("One,09:00,10:00,Person A\nTwo,11:00,12:00,Person A\n"));
+
+    List<Event> events = importer.getEvents();
+    Assert.assertSame(events.get(0).getAttendees().iterator().next(),
+        events.get(1).getAttendees().iterator().next());
+  }
+
+  @Test
+  public void indexMatchesOneBuiltAfterwards() throws IOException {
+    CalendarGenerator generator = new CalendarGenerator(7, 6, 40, 120);
+    StringBuilder csv = new StringBuilder();
+    for (Event event : generator.events()) {
+      appendCsv(csv, event);
+    }
+    CalendarImporter importer = new CalendarImporter();
+    importer.importCsv(new StringReader(csv.toString()));
+
+    BusyIndex imported = importer.buildIndex();
+    BusyIndex expected = BusyIndex.of(importer.getEvents());
+    Assert.assertEquals(expected.attendees(), imported.attendees());
+    for (String attendee : expected.attendees()) {
+      Assert.assertEquals(expected.busyTimes(attendee), imported.busyTimes(attendee));
+    }
+  }
+
+  @Test
+  public void indexOnlyMatchesKeepingEvents() throws IOException {
+    CalendarImporter keeping = new CalendarImporter();
+    keeping.importCsv(new GeneratedCsv(20000));
+    CalendarImporter indexOnly = CalendarImporter.indexOnly();
+    indexOnly.importCsv(new GeneratedCsv(20000));
+
+    BusyIndex expected = keeping.buildIndex();
+    BusyIndex imported = indexOnly.buildIndex();
+    Assert.assertEquals(expected.attendees(), imported.attendees());
+    for (String attendee : expected.attendees()) {
+      Assert.assertEquals(expected.busyTimes(attendee), imported.busyTimes(attendee));
+    }
+    Assert.assertEquals(0, indexOnly.getDuplicates());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void indexOnlyKeepsNoEvents() {
+    CalendarImporter.indexOnly().getEvents();
+  }
+
+  @Test
+  public void largeImport() throws IOException {
+    // The dump is generated as it is read, so the only memory used is the importer's own.
+    CalendarImporter importer = new CalendarImporter();
+    importer.importCsv(new GeneratedCsv(LARGE_IMPORT_EVENTS));
+    BusyIndex index = importer.buildIndex();
+
+    Assert.assertEquals(
+        LARGE_IMPORT_EVENTS, importer.getEvents().size() + importer.getDuplicates());
+    Assert.assertTrue(importer.getDuplicates() > 0);
+    Assert.assertEquals(0, importer.getMalformed());
+    Assert.assertFalse(index.attendees().isEmpty());
+  }
+
+  private static void appendCsv(StringBuilder csv, Event event) {
+    TimeRange when = event.getWhen();
+    csv.append(event.getTitle()).append(',');
+    appendClock(csv, when.start());
+    csv.append(',');
+    appendClock(csv, when.end());
+    csv.append(',').append(String.join(";", new ArrayList<>(event.getAttendees()))).append('\n');
+  }
+
+  private static void appendClock(StringBuilder csv, int minute) {
+    csv.append(minute / 60).append(':');
+    if (minute % 60 < 10) {
+      csv.append('0');
+    }
+    csv.append(minute % 60);
+  }
+
+  /**
+   * A CSV of {@code count} events from a fixed set of titles and attendees, produced a line at a
+   * time. Roughly one event in eight repeats an earlier one.
+   */
+  private static final class GeneratedCsv extends Reader {
+    private final int count;
+    private final StringBuilder line = new StringBuilder();
+    private int produced;
+    private int position;
+
+    GeneratedCsv(int count) {
+      this.count = count;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+      if (position == line.length()) {
+        if (produced == count) {
+          return -1;
+        }
+        nextLine();
+      }
+      int n = Math.min(length, line.length() - position);
+      line.getChars(position, position + n, buffer, offset);
+      position += n;
+      return n;
+    }
+
+    private void nextLine() {
+      int i = produced++;
+      int id = i % 8 == 7 ? i - 7 : i;
+      line.setLength(0);
+      position = 0;
+      line.append("Meeting ").append(id % 100).append(',');
+      int start = (id * 7) % (23 * 60);
+      appendClock(line, start);
+      line.append(',');
+      appendClock(line, start + 15 + id % 45);
+      line.append(",Person ").append(id % 1000).append(";Person ").append((id / 3) % 1000);
+      line.append('\n');
+    }
+
+    @Override
+    public void close() {}
+  }
+}
@@ -0,0 +1,119 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+/**
+ * Shrinks a failing calendar to a smaller one that still fails, so that a fuzzing failure can be
+ * read (and turned into a regular test) without wading through dozens of unrelated events.
+ */
+final class CalendarShrinker {
+  private CalendarShrinker() {
+    // Disallow instances.
+  }
+
+  /**
+   * Returns a subset of {@code events} for which {@code fails} still holds, such that removing
+   * any single event or any single attendee of the request makes it pass. {@code fails} must hold
+   * for the input.
+   */
+  static Failure shrink(List<Event> events, MeetingRequest request,
+      BiPredicate<List<Event>, MeetingRequest> fails) {
+    List<Event> current = new ArrayList<>(events);
+    MeetingRequest currentRequest = request;
+
+    boolean shrunk = true;
+    while (shrunk) {
+      shrunk = false;
+
+      // Try dropping events, in halves first and then one by one.
+      for (int chunk = Math.max(1, current.size() / 2); chunk >= 1; chunk /= 2) {
+        for (int from = 0; from < current.size();) {
+          List<Event> candidate = new ArrayList<>(current);
+          candidate.subList(from, Math.min(from + chunk, candidate.size())).clear();
+          if (fails.test(candidate, currentRequest)) {
+            current = candidate;
+            shrunk = true;
+          } else {
+            from += chunk;
+          }
+        }
+      }
+
+      // Try dropping attendees from the request.
+      for (MeetingRequest candidate : smallerRequests(currentRequest)) {
+        if (fails.test(current, candidate)) {
+          currentRequest = candidate;
+          shrunk = true;
+          break;
+        }
+      }
+    }
+    return new Failure(current, currentRequest);
+  }
+
+  private static List<MeetingRequest> smallerRequests(MeetingRequest request) {
+    List<MeetingRequest> requests = new ArrayList<>();
+    for (String dropped : request.getAttendees()) {
+      List<String> mandatory = new ArrayList<>(request.getAttendees());
+      mandatory.remove(dropped);
+      requests.add(copy(mandatory, request.getOptionalAttendees(), request.getDuration()));
+    }
+    for (String dropped : request.getOptionalAttendees()) {
+      List<String> optional = new ArrayList<>(request.getOptionalAttendees());
+      optional.remove(dropped);
+      requests.add(copy(request.getAttendees(), optional, request.getDuration()));
+    }
+    return requests;
+  }
+
+  private static MeetingRequest copy(
+      Collection<String> mandatory, Collection<String> optional, long duration) {
+    MeetingRequest request = new MeetingRequest(mandatory, duration);
+    for (String person : optional) {
+      request.addOptionalAttendee(person);
+    }
+    return request;
+  }
+
+  /** A calendar and request on which an engine gives the wrong answer. */
+  static final class Failure {
+    final List<Event> events;
+    final MeetingRequest request;
+
+    Failure(List<Event> events, MeetingRequest request) {
+      this.events = events;
+      this.request = request;
+    }
+
+    @Override
+    public String toString() {
+      return "mandatory=" + request.getAttendees() + " optional=" + request.getOptionalAttendees()
+          + " duration=" + request.getDuration() + " events=" + describe(events);
+    }
+
+    private static String describe(List<Event> events) {
+      List<String> descriptions = new ArrayList<>();
+      for (Event event : events) {
+        descriptions.add(event.getTitle() + " " + event.getWhen() + " " + event.getAttendees());
+      }
+      return descriptions.toString();
+    }
+  }
+}
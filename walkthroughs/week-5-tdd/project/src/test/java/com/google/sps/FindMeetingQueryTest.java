@@ -19,6 +19,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -37,6 +38,7 @@ public final class FindMeetingQueryTest {
   private static final String PERSON_C = "Person C";
 
   // All dates are the first day of the year 2020.
+  private static final int TIME_0015AM = TimeRange.getTimeInMinutes(0, 15);
   private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
   private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
   private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
@@ -447,4 +449,95 @@ public final class FindMeetingQueryTest {
 
     Assert.assertEquals(expected, actual);
   }
+
+  @Test
+  public void zeroDurationEventsDontSplitFreeTime() {
+    // Events: a reminder at 10:00 that takes up no time, and a 08:00-09:00 meeting.
+    // Day     : |------------------------------------------|
+    // A       :         |--A--|     |A
+    // Options : |--1----|     |-------------2---------------|
+    //
+    // A 60 minute meeting can span 10:00, as the reminder doesn't make anyone busy. This used
+    // to split option 2 at 10:00, which no other engine did.
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, DURATION_60_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Reminder", TimeRange.fromStartDuration(TIME_1000AM, 0),
+            Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_60_MINUTES);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0900AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals(Optional.of(TimeRange.fromStartDuration(TimeRange.START_OF_DAY,
+        DURATION_60_MINUTES)), query.earliestFit(events, request));
+  }
+
+  @Test
+  public void earliestFitSkipsGapsThatAreTooShort() {
+    // The gap before A's first event is too short, so the earliest fit is after it.
+    //
+    // Mandatory: A
+    // Events   :   |--A--|  |--A--|
+    // Day      : |------------------------|
+    // Fit      :         |-|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0015AM, TIME_0830AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+
+    Assert.assertEquals(
+        Optional.of(TimeRange.fromStartDuration(TIME_0830AM, DURATION_30_MINUTES)),
+        query.earliestFit(events, request));
+  }
+
+  @Test
+  public void earliestFitFallsBackToMandatoryAttendees() {
+    // B is optional and busy all day, so only A's time counts.
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TimeRange.START_OF_DAY, TIME_0800AM),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.WHOLE_DAY, Arrays.asList(PERSON_B)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_60_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+
+    Assert.assertEquals(Optional.of(TimeRange.fromStartDuration(TIME_0800AM, DURATION_60_MINUTES)),
+        query.earliestFit(events, request));
+  }
+
+  @Test
+  public void earliestFitWhenNothingFits() {
+    MeetingRequest request =
+        new MeetingRequest(Arrays.asList(PERSON_A), TimeRange.WHOLE_DAY.duration() + 1);
+
+    Assert.assertEquals(Optional.empty(), query.earliestFit(NO_EVENTS, request));
+  }
+
+  @Test
+  public void earliestFitMatchesQueryOnRandomCalendars() {
+    CalendarGenerator generator = new CalendarGenerator(20200703L, 6, 30, 240);
+    for (int i = 0; i < 2000; i++) {
+      List<Event> events = generator.events();
+      MeetingRequest request = generator.request();
+
+      List<TimeRange> options = new ArrayList<>(query.query(events, request));
+      Optional<TimeRange> fit = query.earliestFit(events, request);
+
+      Assert.assertEquals(!options.isEmpty(), fit.isPresent());
+      if (fit.isPresent()) {
+        Assert.assertEquals(options.get(0).start(), fit.get().start());
+        Assert.assertEquals(request.getDuration(), fit.get().duration());
+      }
+    }
+  }
 }
@@ -0,0 +1,163 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class QueryCoalescerTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final int DURATION_30_MINUTES = 30;
+  private static final long TTL_MILLIS = 1000;
+
+  private static final Collection<Event> EVENTS = Arrays.asList(new Event("Event 1",
+      TimeRange.fromStartDuration(TimeRange.getTimeInMinutes(9, 0), 60), Arrays.asList(PERSON_A)));
+
+  private final AtomicLong now = new AtomicLong();
+  private ExecutorService executor;
+  private QueryCoalescer coalescer;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+    coalescer = new QueryCoalescer(TTL_MILLIS, now::get);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void concurrentIdenticalRequestsShareOneComputation() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountingEngine engine = new CountingEngine(release);
+
+    List<CompletableFuture<Collection<TimeRange>>> answers = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      answers.add(coalescer.query(EVENTS, 1, request(PERSON_A), engine, executor));
+    }
+    release.countDown();
+
+    Collection<TimeRange> expected = new FindMeetingQuery().query(EVENTS, request(PERSON_A));
+    for (CompletableFuture<Collection<TimeRange>> answer : answers) {
+      Assert.assertEquals(
+          new ArrayList<>(expected), new ArrayList<>(answer.get(10, TimeUnit.SECONDS)));
+    }
+    Assert.assertEquals(1, engine.calls.get());
+  }
+
+  @Test
+  public void answersExpire() throws Exception {
+    CountingEngine engine = new CountingEngine(new CountDownLatch(0));
+
+    coalescer.query(EVENTS, 1, request(PERSON_A), engine, Runnable::run).get();
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MILLIS - 1));
+    coalescer.query(EVENTS, 1, request(PERSON_A), engine, Runnable::run).get();
+    Assert.assertEquals(1, engine.calls.get());
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    coalescer.query(EVENTS, 1, request(PERSON_A), engine, Runnable::run).get();
+    Assert.assertEquals(2, engine.calls.get());
+  }
+
+  @Test
+  public void differentRequestsAreNotShared() throws Exception {
+    CountingEngine engine = new CountingEngine(new CountDownLatch(0));
+
+    coalescer.query(EVENTS, 1, request(PERSON_A), engine, Runnable::run).get();
+    coalescer.query(EVENTS, 1, request(PERSON_B), engine, Runnable::run).get();
+    coalescer.query(EVENTS, 2, request(PERSON_A), engine, Runnable::run).get();
+
+    MeetingRequest withOptional = request(PERSON_A);
+    withOptional.addOptionalAttendee(PERSON_B);
+    coalescer.query(EVENTS, 1, withOptional, engine, Runnable::run).get();
+
+    Assert.assertEquals(4, engine.calls.get());
+  }
+
+  @Test
+  public void differentEnginesAreNotShared() throws Exception {
+    CountingEngine engine = new CountingEngine(new CountDownLatch(0));
+    CountingEngine other = new CountingEngine(new CountDownLatch(0));
+
+    coalescer.query(EVENTS, 1, request(PERSON_A), engine, Runnable::run).get();
+    coalescer.query(EVENTS, 1, request(PERSON_A), other, Runnable::run).get();
+
+    Assert.assertEquals(1, engine.calls.get());
+    Assert.assertEquals(1, other.calls.get());
+  }
+
+  @Test
+  public void failuresAreNotCached() throws Exception {
+    AvailabilityEngine failing = new AvailabilityEngine() {
+      @Override
+      public Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
+        throw new IllegalStateException("backing store unavailable");
+      }
+    };
+    Assert.assertTrue(coalescer.query(EVENTS, 1, request(PERSON_A), failing, Runnable::run)
+                          .isCompletedExceptionally());
+
+    CountingEngine engine = new CountingEngine(new CountDownLatch(0));
+    coalescer.query(EVENTS, 1, request(PERSON_A), engine, Runnable::run).get();
+    Assert.assertEquals(1, engine.calls.get());
+  }
+
+  private static MeetingRequest request(String attendee) {
+    return new MeetingRequest(Collections.singletonList(attendee), DURATION_30_MINUTES);
+  }
+
+  /** Counts its calls and holds every call until {@code release} opens. */
+  private static final class CountingEngine implements AvailabilityEngine {
+    final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release;
+
+    CountingEngine(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
+      calls.incrementAndGet();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return new FindMeetingQuery().query(events, request);
+    }
+  }
+}
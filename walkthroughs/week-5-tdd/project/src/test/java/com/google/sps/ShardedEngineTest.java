@@ -0,0 +1,154 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class ShardedEngineTest {
+  private static final long SEED = 20200715L;
+  private static final int PEOPLE = 12;
+  private static final int MAX_EVENTS = 60;
+  private static final int MAX_EVENT_DURATION = 240;
+
+  private ExecutorService executor;
+  private final List<HttpServer> servers = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    for (HttpServer server : servers) {
+      server.stop(0);
+    }
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void matchesUnshardedEngine() {
+    CalendarGenerator generator =
+        new CalendarGenerator(SEED, PEOPLE, MAX_EVENTS, MAX_EVENT_DURATION);
+    AvailabilityEngine expected = new IndexedEngine();
+
+    for (int i = 0; i < 300; i++) {
+      List<Event> events = generator.events();
+      MeetingRequest request = generator.request();
+      for (int shardCount : new int[] {1, 3, 7}) {
+        ShardedEngine sharded =
+            new ShardedEngine(ShardedEngine.partition(events, shardCount), executor);
+        Assert.assertEquals(new ArrayList<>(expected.query(events, request)),
+            new ArrayList<>(sharded.query(events, request)));
+      }
+    }
+  }
+
+  @Test
+  public void eachShardOnlyKnowsItsOwnAttendees() throws IOException {
+    List<Event> events = new CalendarGenerator(SEED, PEOPLE, MAX_EVENTS, MAX_EVENT_DURATION)
+        .events(MAX_EVENTS);
+    List<String> everyone = new ArrayList<>(BusyIndex.of(events).attendees());
+    List<CalendarShard> shards = ShardedEngine.partition(events, 3);
+
+    for (int i = 0; i < 3; i++) {
+      CalendarShard alone = ShardedEngine.shard(events, i, 3);
+      Assert.assertEquals(shards.get(i).busyTimes(everyone), alone.busyTimes(everyone));
+      for (String attendee : alone.busyTimes(everyone).keySet()) {
+        Assert.assertEquals(i, ShardedEngine.shardOf(attendee, 3));
+      }
+    }
+  }
+
+  @Test
+  public void localhostShards() throws IOException {
+    List<Event> events = new CalendarGenerator(SEED, PEOPLE, MAX_EVENTS, MAX_EVENT_DURATION)
+        .events(MAX_EVENTS);
+    List<CalendarShard> remote = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      remote.add(new RemoteCalendarShard(serve(ShardedEngine.shard(events, i, 3))));
+    }
+    ShardedEngine sharded = new ShardedEngine(remote, executor);
+
+    List<String> everyone = new ArrayList<>(BusyIndex.of(events).attendees());
+    MeetingRequest request = new MeetingRequest(everyone.subList(0, 2), 30);
+    request.addOptionalAttendee(everyone.get(2));
+    Assert.assertEquals(new ArrayList<>(new IndexedEngine().query(events, request)),
+        new ArrayList<>(sharded.query(events, request)));
+    Assert.assertEquals(BusyIndex.of(events).busyTimes(everyone),
+        sharded.busyTimes(everyone).join());
+  }
+
+  @Test
+  public void failingShardFailsTheQuery() {
+    CalendarShard failing = attendees -> {
+      throw new IOException("shard unavailable");
+    };
+    ShardedEngine sharded = new ShardedEngine(Arrays.asList(failing), executor);
+
+    try {
+      sharded.busyTimes(Arrays.asList("Person 0")).join();
+      Assert.fail();
+    } catch (CompletionException e) {
+      Assert.assertTrue(e.getCause() instanceof UncheckedIOException);
+    }
+  }
+
+  /** Serves {@code shard} the way {@code ShardServlet} does, returning its URL. */
+  private String serve(CalendarShard shard) throws IOException {
+    HttpServer server =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/shard", exchange -> {
+      List<String> attendees = new ArrayList<>();
+      for (String parameter : exchange.getRequestURI().getRawQuery().split("&")) {
+        if (parameter.startsWith("attendee=")) {
+          attendees.add(URLDecoder.decode(parameter.substring(9), "UTF-8"));
+        }
+      }
+      byte[] body = new Gson().toJson(shard.busyTimes(attendees)).getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+    servers.add(server);
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+        + "/shard";
+  }
+}
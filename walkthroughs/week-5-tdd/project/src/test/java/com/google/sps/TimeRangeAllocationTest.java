@@ -0,0 +1,138 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Measures how many bytes are allocated per call, using the allocation counter that HotSpot keeps
+ * for each thread. Skipped on JVMs without one.
+ *
+ * <p>Calls that should not allocate at all are always checked. What larger calls allocate depends
+ * on the JIT and the collections library, so those are benchmarks, only run with {@code
+ * -Dsps.benchmarks=true}.
+ */
+@RunWith(JUnit4.class)
+public final class TimeRangeAllocationTest {
+  private static final int WARM_UP = 20000;
+  private static final int ITERATIONS = 100000;
+
+  // The sample calendar is copied until it has this many events, for the large-calendar profile.
+  private static final int SCALED_EVENTS = 100000;
+
+  private static final boolean BENCHMARKS = Boolean.getBoolean("sps.benchmarks");
+
+  private com.sun.management.ThreadMXBean threads;
+
+  // Results are kept here so that the JIT can't optimise the allocations away.
+  private Object sink;
+
+  @Before
+  public void setUp() {
+    Assume.assumeTrue(
+        ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+  }
+
+  @Test
+  public void sharedRangesDoNotAllocate() {
+    double onGrid = bytesPerCall(() -> TimeRange.fromStartDuration(600, 30));
+    double offGrid = bytesPerCall(() -> TimeRange.fromStartDuration(601, 29));
+    Assert.assertTrue("on the grid: " + onGrid + " bytes", onGrid < 1);
+    Assert.assertTrue("off the grid: " + offGrid + " bytes", offGrid >= 16);
+  }
+
+  @Test
+  public void findMeetingQueryOnSampleCalendar() {
+    Assume.assumeTrue(BENCHMARKS);
+    Collection<Event> events = Arrays.asList(Events.events);
+    MeetingRequest request = new MeetingRequest(Arrays.asList("Emma", "Isabella"), 30);
+    request.addOptionalAttendee("Logan");
+    FindMeetingQuery query = new FindMeetingQuery();
+
+    // About 10 KB at the time of writing; mostly the lists the busy times are collected in.
+    double bytes = bytesPerCall(() -> query.query(events, request));
+    Assert.assertTrue(bytes + " bytes per query", bytes < 20000);
+  }
+
+  @Test
+  public void getAttendeesDoesNotAllocate() {
+    Event small = Events.events[0];
+    List<String> people = new ArrayList<>();
+    for (int i = 0; i <= AttendeeSet.LINEAR_SEARCH_LIMIT; i++) {
+      people.add("Person " + i);
+    }
+    Event large = new Event("All hands", TimeRange.WHOLE_DAY, people);
+
+    Assert.assertTrue(bytesPerCall(small::getAttendees) < 1);
+    Assert.assertTrue(bytesPerCall(large::getAttendees) < 1);
+  }
+
+  @Test
+  public void attendeeScanOnScaledCalendar() {
+    Assume.assumeTrue(BENCHMARKS);
+    List<Event> events = new ArrayList<>(SCALED_EVENTS);
+    for (int copy = 0; events.size() < SCALED_EVENTS; copy++) {
+      for (Event event : Events.events) {
+        events.add(new Event(event.getTitle() + " " + copy, event.getWhen(), event.getAttendees()));
+      }
+    }
+    Collection<String> people = Arrays.asList("Emma", "Isabella");
+
+    // The loop every query runs to pick out the events that matter to its attendees.
+    double bytes = bytesPerCall(() -> {
+      int busy = 0;
+      for (Event event : events) {
+        if (!Collections.disjoint(event.getAttendees(), people)) {
+          busy++;
+        }
+      }
+      return busy;
+    }, 20, 100);
+    // What is left is the iterator Collections.disjoint creates for each event.
+    double bytesPerEvent = bytes / events.size();
+    Assert.assertTrue(bytesPerEvent + " bytes per event", bytesPerEvent <= 32);
+  }
+
+  private double bytesPerCall(Supplier<Object> call) {
+    return bytesPerCall(call, WARM_UP, ITERATIONS);
+  }
+
+  private double bytesPerCall(Supplier<Object> call, int warmUp, int iterations) {
+    for (int i = 0; i < warmUp; i++) {
+      sink = call.get();
+    }
+    long threadId = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < iterations; i++) {
+      sink = call.get();
+    }
+    return (threads.getThreadAllocatedBytes(threadId) - before) / (double) iterations;
+  }
+}
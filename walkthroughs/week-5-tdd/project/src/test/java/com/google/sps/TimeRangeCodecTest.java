@@ -0,0 +1,140 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class TimeRangeCodecTest {
+  @Test
+  public void roundTrip() throws IOException {
+    List<TimeRange> ranges = Arrays.asList(TimeRange.fromStartEnd(0, 480, false),
+        TimeRange.fromStartEnd(510, 540, false), TimeRange.fromStartEnd(600, 1440, false));
+
+    Assert.assertEquals(ranges, decode(encode(ranges)));
+  }
+
+  @Test
+  public void emptyAndWholeDay() throws IOException {
+    Assert.assertEquals(Collections.emptyList(), decode(encode(Collections.emptyList())));
+    Assert.assertEquals(Arrays.asList(TimeRange.WHOLE_DAY),
+        decode(encode(Arrays.asList(TimeRange.WHOLE_DAY))));
+  }
+
+  @Test
+  public void muchSmallerThanJson() throws IOException {
+    // A fragmented day: a free range of 10 minutes every 15 minutes.
+    List<TimeRange> ranges = new ArrayList<>();
+    for (int start = 0; start < TimeRange.WHOLE_DAY.end(); start += 15) {
+      ranges.add(TimeRange.fromStartDuration(start, 10));
+    }
+
+    byte[] binary = encode(ranges);
+    byte[] json = new Gson().toJson(ranges).getBytes(StandardCharsets.UTF_8);
+
+    // The version, a one-byte count, and then one byte for each gap and each duration.
+    Assert.assertEquals(1 + 1 + 2 * ranges.size(), binary.length);
+    Assert.assertTrue(binary.length * 10 < json.length);
+    Assert.assertEquals(ranges, decode(binary));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnsortedRanges() throws IOException {
+    encode(Arrays.asList(TimeRange.fromStartDuration(600, 30), TimeRange.fromStartDuration(0, 30)));
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsTruncatedInput() throws IOException {
+    byte[] bytes = encode(Arrays.asList(TimeRange.fromStartDuration(600, 300)));
+    decode(Arrays.copyOf(bytes, bytes.length - 1));
+  }
+
+  @Test
+  public void acceptsTheLargestVarint() throws IOException {
+    // 2^31 - 1 takes five bytes. Any range that far out is past the day, so use it as the count.
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(1);
+    out.write(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+
+    try {
+      decode(out.toByteArray());
+      Assert.fail("a count of 2^31 - 1 ranges with none there should run out of input");
+    } catch (EOFException e) {
+      // Expected: the count was read, and the input ended at the first range.
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsVarintsLongerThanFiveBytes() throws IOException {
+    decode(new byte[] {1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0});
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsVarintsThatOverflow() throws IOException {
+    // 2^32 - 1, which would wrap around to -1 in an int.
+    decode(new byte[] {1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F});
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsNegativeValues() throws IOException {
+    // 2^31, which would wrap around to Integer.MIN_VALUE: one range, with a negative gap.
+    decode(new byte[] {1, 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x08, 30});
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsRangesPastTheEndOfTheDay() throws IOException {
+    // One range: starting at 23:00 and lasting two hours.
+    decode(new byte[] {1, 1, (byte) 0xE4, 0x0A, 120});
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsGapsThatOverflowTheStart() throws IOException {
+    // Two ranges: the whole day, then a gap of 2^31 - 1 minutes that would wrap the start around.
+    decode(new byte[] {1, 2, 0, (byte) 0xA0, 0x0B,
+        (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 0});
+  }
+
+  @Test
+  public void rangeEndingAtTheEndOfTheDay() throws IOException {
+    // One range: starting at 23:00 and lasting an hour.
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartEnd(1380, 1440, false)),
+        decode(new byte[] {1, 1, (byte) 0xE4, 0x0A, 60}));
+  }
+
+  private static byte[] encode(Collection<TimeRange> ranges) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TimeRangeCodec.write(ranges, out);
+    return out.toByteArray();
+  }
+
+  private static List<TimeRange> decode(byte[] bytes) throws IOException {
+    return TimeRangeCodec.read(new ByteArrayInputStream(bytes));
+  }
+}
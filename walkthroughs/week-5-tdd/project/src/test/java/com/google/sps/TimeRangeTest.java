@@ -184,4 +184,30 @@ public final class TimeRangeTest {
     Assert.assertTrue(emptyMiddle.overlaps(range));
     Assert.assertTrue(emptyEnd.overlaps(range));
   }
+
+  @Test
+  public void rangesOnTheGridAreShared() {
+    Assert.assertSame(TimeRange.fromStartDuration(600, 30), TimeRange.fromStartDuration(600, 30));
+    Assert.assertSame(
+        TimeRange.fromStartDuration(600, 30), TimeRange.fromStartEnd(600, 630, false));
+    Assert.assertSame(TimeRange.WHOLE_DAY, TimeRange.fromStartEnd(0, 24 * 60, false));
+    Assert.assertSame(TimeRange.WHOLE_DAY,
+        TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TimeRange.END_OF_DAY, true));
+  }
+
+  @Test
+  public void rangesOffTheGridAreStillEqual() {
+    TimeRange a = TimeRange.fromStartDuration(601, 30);
+    TimeRange b = TimeRange.fromStartDuration(601, 30);
+    Assert.assertNotSame(a, b);
+    Assert.assertEquals(a, b);
+    Assert.assertEquals(a.hashCode(), b.hashCode());
+
+    // Ranges that spill past the end of the day are not shared either.
+    TimeRange c = TimeRange.fromStartDuration(1435, 10);
+    TimeRange d = TimeRange.fromStartDuration(1435, 10);
+    Assert.assertNotSame(c, d);
+    Assert.assertEquals(c, d);
+    Assert.assertSame(TimeRange.fromStartDuration(1435, 5), TimeRange.fromStartDuration(1435, 5));
+  }
 }
@@ -0,0 +1,145 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class QueryServletTest {
+  @Test
+  public void binaryOnlyWhenPreferred() {
+    Assert.assertTrue(QueryServlet.prefersBinary("application/octet-stream"));
+    Assert.assertTrue(QueryServlet.prefersBinary("application/octet-stream, */*;q=0.1"));
+    Assert.assertTrue(
+        QueryServlet.prefersBinary("application/json;q=0.5, application/octet-stream;q=0.9"));
+
+    Assert.assertFalse(QueryServlet.prefersBinary(null));
+    Assert.assertFalse(QueryServlet.prefersBinary("*/*"));
+    Assert.assertFalse(QueryServlet.prefersBinary("application/json"));
+    Assert.assertFalse(QueryServlet.prefersBinary("application/json, application/octet-stream"));
+  }
+
+  @Test
+  public void zeroQualityTurnsBinaryDown() {
+    Assert.assertFalse(QueryServlet.prefersBinary("application/octet-stream;q=0"));
+    Assert.assertFalse(QueryServlet.prefersBinary("application/octet-stream; q=0, */*"));
+    Assert.assertFalse(QueryServlet.prefersBinary("application/octet-stream;q=0, application/*"));
+    Assert.assertFalse(QueryServlet.prefersBinary("application/octet-stream;q=bogus"));
+  }
+
+  @Test
+  public void answersAMeetingRequest() throws IOException {
+    Exchange exchange = new Exchange("{\"attendees\": [\"Person A\"], \"duration\": 30}");
+
+    new QueryServlet().doPost(exchange.request(), exchange.response());
+
+    Assert.assertTrue(exchange.completed.get());
+    Assert.assertEquals(HttpServletResponse.SC_OK, exchange.status.get());
+    Assert.assertTrue(exchange.sent.toString(), exchange.sent.toString().startsWith("[{"));
+  }
+
+  @Test
+  public void emptyBodyIsABadRequest() throws IOException {
+    Exchange exchange = new Exchange("");
+
+    new QueryServlet().doPost(exchange.request(), exchange.response());
+
+    Assert.assertTrue(exchange.completed.get());
+    Assert.assertEquals(HttpServletResponse.SC_BAD_REQUEST, exchange.status.get());
+  }
+
+  @Test
+  public void malformedBodyIsABadRequest() throws IOException {
+    Exchange exchange = new Exchange("{\"attendees\": [");
+
+    new QueryServlet().doPost(exchange.request(), exchange.response());
+
+    Assert.assertTrue(exchange.completed.get());
+    Assert.assertEquals(HttpServletResponse.SC_BAD_REQUEST, exchange.status.get());
+  }
+
+  /** A request with {@code body} and a response that records what the servlet sends. */
+  private static final class Exchange {
+    final String body;
+    final AtomicBoolean completed = new AtomicBoolean();
+    final AtomicInteger status = new AtomicInteger(HttpServletResponse.SC_OK);
+    final StringWriter sent = new StringWriter();
+
+    Exchange(String body) {
+      this.body = body;
+    }
+
+    HttpServletRequest request() {
+      AsyncContext asyncContext = stub(AsyncContext.class, (name, args) -> {
+        if (name.equals("complete")) {
+          completed.set(true);
+        }
+        return null;
+      });
+      return stub(HttpServletRequest.class, (name, args) -> {
+        switch (name) {
+          case "startAsync":
+            return asyncContext;
+          case "getReader":
+            return new BufferedReader(new StringReader(body));
+          default:
+            return null;
+        }
+      });
+    }
+
+    HttpServletResponse response() {
+      PrintWriter writer = new PrintWriter(sent, true);
+      return stub(HttpServletResponse.class, (name, args) -> {
+        switch (name) {
+          case "sendError":
+            status.set((Integer) args[0]);
+            return null;
+          case "getWriter":
+            return writer;
+          case "isCommitted":
+            return false;
+          default:
+            return null;
+        }
+      });
+    }
+  }
+
+  private interface Answer {
+    Object answer(String method, Object[] args);
+  }
+
+  /** Returns an implementation of {@code type} whose methods all go to {@code answer}. */
+  private static <T> T stub(Class<T> type, Answer answer) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        (proxy, method, args) -> answer.answer(method.getName(), args)));
+  }
+}
@@ -0,0 +1,200 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for the request executors, driven through {@code RequestExecutors.dispatch} with stand-in
+ * requests. Bursts of requests that block check how many of them each kind of executor runs at
+ * once.
+ */
+@RunWith(JUnit4.class)
+public final class RequestExecutorsTest {
+  private static final int POOL_THREADS = 16;
+  // More requests than the pool has threads.
+  private static final int BURST = 4 * POOL_THREADS;
+
+  @Test
+  public void containerModeHasNoExecutor() {
+    Assert.assertNull(RequestExecutors.newExecutor(RequestExecutors.CONTAINER, POOL_THREADS));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownMode() {
+    RequestExecutors.newExecutor("green", POOL_THREADS);
+  }
+
+  @Test
+  public void virtualModeAlwaysHasAnExecutor() {
+    // Falls back to platform threads on JDKs without virtual threads.
+    ExecutorService executor = RequestExecutors.newExecutor(RequestExecutors.VIRTUAL, 1);
+    Assert.assertNotNull(executor);
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void containerModeRunsOnTheCallingThread() throws IOException {
+    FakeExchange exchange = new FakeExchange(new CountDownLatch(1));
+    Thread caller = Thread.currentThread();
+    AtomicBoolean ranOnCaller = new AtomicBoolean();
+
+    RequestExecutors.dispatch(null, exchange.request(), exchange.response(),
+        (request, response) -> ranOnCaller.set(Thread.currentThread() == caller));
+
+    Assert.assertTrue(ranOnCaller.get());
+    Assert.assertFalse(exchange.asyncStarted.get());
+  }
+
+  @Test
+  public void failingHandlerGetsServerErrorAndCompletes() throws Exception {
+    ExecutorService executor = RequestExecutors.newExecutor(RequestExecutors.PLATFORM, 1);
+    FakeExchange exchange = new FakeExchange(new CountDownLatch(1));
+
+    RequestExecutors.dispatch(executor, exchange.request(), exchange.response(),
+        (request, response) -> {
+          throw new IllegalStateException("backing store is down");
+        });
+
+    Assert.assertTrue(exchange.completed.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, exchange.status.get());
+    executor.shutdown();
+  }
+
+  @Test
+  public void rejectedRequestGetsServerErrorAndCompletes() throws IOException {
+    ExecutorService executor = RequestExecutors.newExecutor(RequestExecutors.PLATFORM, 1);
+    executor.shutdown();
+    FakeExchange exchange = new FakeExchange(new CountDownLatch(1));
+
+    RequestExecutors.dispatch(executor, exchange.request(), exchange.response(),
+        (request, response) -> Assert.fail("should not run"));
+
+    Assert.assertEquals(0, exchange.completed.getCount());
+    Assert.assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, exchange.status.get());
+  }
+
+  @Test
+  public void platformPoolRunsAsManyBlockingRequestsAtOnceAsItHasThreads() throws Exception {
+    ExecutorService executor =
+        RequestExecutors.newExecutor(RequestExecutors.PLATFORM, POOL_THREADS);
+
+    Assert.assertEquals(POOL_THREADS, peakConcurrency(executor, POOL_THREADS, BURST));
+  }
+
+  @Test
+  public void virtualThreadsRunEveryBlockingRequestAtOnce() throws Exception {
+    ExecutorService executor = RequestExecutors.newVirtualExecutor();
+    Assume.assumeNotNull(executor);
+
+    Assert.assertEquals(BURST, peakConcurrency(executor, BURST, BURST));
+  }
+
+  /**
+   * Dispatches {@code requests} requests that block, like a read from a backing store would, until
+   * {@code blocked} of them are blocked at once. Then lets them all finish, and returns the most
+   * that were running at the same time.
+   */
+  private static int peakConcurrency(ExecutorService executor, int blocked, int requests)
+      throws Exception {
+    CountDownLatch allBlocked = new CountDownLatch(blocked);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(requests);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger peak = new AtomicInteger();
+    AtomicInteger errors = new AtomicInteger();
+    for (int i = 0; i < requests; i++) {
+      FakeExchange exchange = new FakeExchange(done);
+      RequestExecutors.dispatch(executor, exchange.request(), exchange.response(),
+          (request, response) -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            allBlocked.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              errors.incrementAndGet();
+            }
+            running.decrementAndGet();
+          });
+    }
+    Assert.assertTrue(allBlocked.await(1, TimeUnit.MINUTES));
+    release.countDown();
+    Assert.assertTrue(done.await(1, TimeUnit.MINUTES));
+    executor.shutdown();
+    Assert.assertEquals(0, errors.get());
+    return peak.get();
+  }
+
+  /** A request and response that record what dispatch does with them. */
+  private static final class FakeExchange {
+    final CountDownLatch completed;
+    final AtomicBoolean asyncStarted = new AtomicBoolean();
+    final AtomicInteger status = new AtomicInteger(HttpServletResponse.SC_OK);
+
+    FakeExchange(CountDownLatch completed) {
+      this.completed = completed;
+    }
+
+    HttpServletRequest request() {
+      AsyncContext asyncContext = stub(AsyncContext.class, (name, args) -> {
+        if (name.equals("complete")) {
+          completed.countDown();
+        }
+        return null;
+      });
+      return stub(HttpServletRequest.class, (name, args) -> {
+        if (name.equals("startAsync")) {
+          asyncStarted.set(true);
+          return asyncContext;
+        }
+        return null;
+      });
+    }
+
+    HttpServletResponse response() {
+      return stub(HttpServletResponse.class, (name, args) -> {
+        if (name.equals("sendError")) {
+          status.set((Integer) args[0]);
+        }
+        return name.equals("isCommitted") ? false : null;
+      });
+    }
+  }
+
+  private interface Answer {
+    Object answer(String method, Object[] args);
+  }
+
+  /** Returns an implementation of {@code type} whose methods all go to {@code answer}. */
+  private static <T> T stub(Class<T> type, Answer answer) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        (proxy, method, args) -> answer.answer(method.getName(), args)));
+  }
+}